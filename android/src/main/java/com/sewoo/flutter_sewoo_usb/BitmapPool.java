@@ -0,0 +1,104 @@
+package com.sewoo.flutter_sewoo_usb;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+// ARGB_8888 bitmaps reused through reconfigure() and BitmapFactory's inBitmap
+public class BitmapPool extends BufferPool<Bitmap> {
+    private static final long MAX_POOLED_BYTES = 8L * 1024 * 1024;
+    private static final int BYTES_PER_PIXEL = 4;
+
+    private static BitmapPool instance;
+
+    private BitmapPool() {
+        super(MAX_POOLED_BYTES);
+    }
+
+    public static synchronized BitmapPool getInstance() {
+        if (instance == null) {
+            instance = new BitmapPool();
+        }
+        return instance;
+    }
+
+    // Contents are undefined; callers draw over or erase the whole bitmap. A pooled bitmap at least this large is
+    // reconfigured to the requested size; otherwise exactly width x height is allocated
+    public Bitmap lease(int width, int height) {
+        Bitmap bitmap = take((long) width * height * BYTES_PER_PIXEL);
+        if (bitmap != null) {
+            bitmap.reconfigure(width, height, Bitmap.Config.ARGB_8888);
+        } else {
+            bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        }
+        leased(bitmap);
+        return bitmap;
+    }
+
+    public Bitmap decodeByteArray(byte[] data) {
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(data, 0, data.length, bounds);
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+            return null;
+        }
+
+        Bitmap target = lease(bounds.outWidth, bounds.outHeight);
+        try {
+            Bitmap bitmap = BitmapFactory.decodeByteArray(data, 0, data.length, decodeOptions(target));
+            return adopt(bitmap, target);
+        } catch (IllegalArgumentException e) {
+            release(target);
+            return adopt(BitmapFactory.decodeByteArray(data, 0, data.length, decodeOptions(null)), null);
+        }
+    }
+
+    public Bitmap decodeFile(String path) {
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(path, bounds);
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+            return null;
+        }
+
+        Bitmap target = lease(bounds.outWidth, bounds.outHeight);
+        try {
+            Bitmap bitmap = BitmapFactory.decodeFile(path, decodeOptions(target));
+            return adopt(bitmap, target);
+        } catch (IllegalArgumentException e) {
+            release(target);
+            return adopt(BitmapFactory.decodeFile(path, decodeOptions(null)), null);
+        }
+    }
+
+    private static BitmapFactory.Options decodeOptions(Bitmap target) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        options.inMutable = true;
+        options.inBitmap = target;
+        return options;
+    }
+
+    // The decoder may ignore inBitmap; a bitmap it allocated itself becomes a lease in its place
+    private Bitmap adopt(Bitmap decoded, Bitmap target) {
+        if (decoded == target) {
+            return decoded;
+        }
+        if (target != null) {
+            release(target);
+        }
+        if (decoded != null) {
+            leased(decoded);
+        }
+        return decoded;
+    }
+
+    @Override
+    protected long capacityOf(Bitmap bitmap) {
+        return bitmap.isRecycled() || !bitmap.isMutable() ? 0 : bitmap.getAllocationByteCount();
+    }
+
+    @Override
+    protected void free(Bitmap bitmap) {
+        bitmap.recycle();
+    }
+}
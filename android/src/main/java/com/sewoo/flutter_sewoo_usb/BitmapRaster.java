@@ -0,0 +1,51 @@
+package com.sewoo.flutter_sewoo_usb;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+
+// The Android side of RasterImage: bitmaps in from decoders and renderers, bitmaps out for the SDK's printBitmap
+public final class BitmapRaster {
+    private BitmapRaster() {
+    }
+
+    // Scales down to the head width first; narrower bitmaps keep their size
+    public static RasterImage rasterize(Bitmap bitmap, int maxWidthDots) {
+        Bitmap scaled = null;
+        if (bitmap.getWidth() > maxWidthDots) {
+            int scaledHeight = Math.max(1, bitmap.getHeight() * maxWidthDots / bitmap.getWidth());
+            scaled = BitmapPool.getInstance().lease(maxWidthDots, scaledHeight);
+            scaled.eraseColor(0);
+            new Canvas(scaled).drawBitmap(bitmap, null, new Rect(0, 0, maxWidthDots, scaledHeight),
+                    new Paint(Paint.FILTER_BITMAP_FLAG));
+        }
+
+        Bitmap source = scaled != null ? scaled : bitmap;
+        int width = source.getWidth();
+        try {
+            return RasterImage.fromRows(width, source.getHeight(),
+                    (y, row) -> source.getPixels(row, 0, width, 0, y, width, 1));
+        } finally {
+            if (scaled != null) {
+                BitmapPool.getInstance().release(scaled);
+            }
+        }
+    }
+
+    // Pooled bitmap; the caller releases it to BitmapPool once the SDK has taken it
+    public static Bitmap toBitmap(RasterImage raster) {
+        int widthDots = raster.getWidthBytes() * 8;
+        int rows = raster.getHeight();
+        int[] pixels = IntArrayPool.getInstance().lease(widthDots * rows);
+        for (int y = 0; y < rows; y++) {
+            for (int x = 0; x < widthDots; x++) {
+                pixels[y * widthDots + x] = raster.isDot(x, y) ? 0xFF000000 : 0xFFFFFFFF;
+            }
+        }
+        Bitmap bitmap = BitmapPool.getInstance().lease(widthDots, rows);
+        bitmap.setPixels(pixels, 0, widthDots, 0, 0, widthDots, rows);
+        IntArrayPool.getInstance().release(pixels);
+        return bitmap;
+    }
+}
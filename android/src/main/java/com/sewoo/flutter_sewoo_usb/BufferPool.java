@@ -0,0 +1,199 @@
+package com.sewoo.flutter_sewoo_usb;
+
+import android.util.Log;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+// Buffers are bucketed by power-of-two capacity: a release files under the bucket at or below the buffer's real
+// capacity, a lease takes the first buffer that fits from that bucket for the request or one of the next ones up
+public abstract class BufferPool<T> {
+    private static final String TAG = "FlutterSewooUsb";
+    // A lease may take a buffer from at most this many buckets above its own, i.e. up to 4x the request
+    private static final int MAX_OVERSIZE_BUCKETS = 1;
+    private static volatile boolean leakDetection = false;
+
+    private final long maxPooledBytes;
+    private final Map<Integer, ArrayDeque<T>> buckets = new HashMap<>();
+    private final Map<Integer, List<Lease<T>>> leases = new HashMap<>();
+    private final ReferenceQueue<T> collected = new ReferenceQueue<>();
+    private long pooledBytes = 0;
+    private long leasedBytes = 0;
+    private long peakBytes = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long leaks = 0;
+    private int outstanding = 0;
+
+    protected BufferPool(long maxPooledBytes) {
+        this.maxPooledBytes = maxPooledBytes;
+    }
+
+    // Records a stack trace per lease and reports buffers that were garbage collected without a release
+    public static void setLeakDetection(boolean enabled) {
+        leakDetection = enabled;
+    }
+
+    protected abstract long capacityOf(T buffer);
+
+    protected abstract void free(T buffer);
+
+    protected synchronized T take(long requiredBytes) {
+        reportLeaks();
+        T buffer = null;
+        int last = bucketAtLeast(requiredBytes) + MAX_OVERSIZE_BUCKETS;
+        for (int key = bucketAtMost(Math.max(1, requiredBytes)); buffer == null && key <= last; key++) {
+            buffer = pollFitting(buckets.get(key), requiredBytes);
+        }
+        if (buffer != null) {
+            hits++;
+            pooledBytes -= capacityOf(buffer);
+        } else {
+            misses++;
+        }
+        return buffer;
+    }
+
+    protected synchronized void leased(T buffer) {
+        long capacity = capacityOf(buffer);
+        outstanding++;
+        leasedBytes += capacity;
+        peakBytes = Math.max(peakBytes, leasedBytes + pooledBytes);
+        if (leakDetection) {
+            int key = System.identityHashCode(buffer);
+            List<Lease<T>> records = leases.get(key);
+            if (records == null) {
+                records = new ArrayList<>(1);
+                leases.put(key, records);
+            }
+            records.add(new Lease<>(buffer, capacity, collected));
+        }
+    }
+
+    public synchronized void release(T buffer) {
+        if (buffer == null) {
+            return;
+        }
+        long capacity = capacityOf(buffer);
+        forgetLease(buffer);
+        outstanding = Math.max(0, outstanding - 1);
+        leasedBytes = Math.max(0, leasedBytes - capacity);
+
+        if (capacity <= 0 || pooledBytes + capacity > maxPooledBytes) {
+            free(buffer);
+            return;
+        }
+        int key = bucketAtMost(capacity);
+        ArrayDeque<T> bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = new ArrayDeque<>();
+            buckets.put(key, bucket);
+        }
+        bucket.push(buffer);
+        pooledBytes += capacity;
+    }
+
+    public synchronized void trim() {
+        for (ArrayDeque<T> bucket : buckets.values()) {
+            for (T buffer : bucket) {
+                free(buffer);
+            }
+        }
+        buckets.clear();
+        pooledBytes = 0;
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        reportLeaks();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        stats.put("outstanding", outstanding);
+        stats.put("leasedBytes", leasedBytes);
+        stats.put("pooledBytes", pooledBytes);
+        stats.put("peakBytes", peakBytes);
+        stats.put("maxPooledBytes", maxPooledBytes);
+        stats.put("leaks", leaks);
+        return stats;
+    }
+
+    protected static long bucketSize(long requiredBytes) {
+        return 1L << bucketAtLeast(requiredBytes);
+    }
+
+    private static int bucketAtLeast(long bytes) {
+        return bytes <= 1 ? 0 : 64 - Long.numberOfLeadingZeros(bytes - 1);
+    }
+
+    private static int bucketAtMost(long bytes) {
+        return 63 - Long.numberOfLeadingZeros(bytes);
+    }
+
+    // Buffers of exact, non power-of-two sizes share a bucket with smaller ones, so each candidate is checked
+    private T pollFitting(ArrayDeque<T> bucket, long requiredBytes) {
+        if (bucket == null) {
+            return null;
+        }
+        Iterator<T> iterator = bucket.iterator();
+        while (iterator.hasNext()) {
+            T buffer = iterator.next();
+            if (capacityOf(buffer) >= requiredBytes) {
+                iterator.remove();
+                return buffer;
+            }
+        }
+        return null;
+    }
+
+    private void forgetLease(T buffer) {
+        List<Lease<T>> records = leases.get(System.identityHashCode(buffer));
+        if (records == null) {
+            return;
+        }
+        for (int i = 0; i < records.size(); i++) {
+            if (records.get(i).get() == buffer) {
+                records.remove(i).clear();
+                break;
+            }
+        }
+        if (records.isEmpty()) {
+            leases.remove(System.identityHashCode(buffer));
+        }
+    }
+
+    private void reportLeaks() {
+        Lease<?> lease;
+        while ((lease = (Lease<?>) collected.poll()) != null) {
+            List<Lease<T>> records = leases.get(lease.identity);
+            if (records == null || !records.remove(lease)) {
+                continue;
+            }
+            if (records.isEmpty()) {
+                leases.remove(lease.identity);
+            }
+            leaks++;
+            outstanding = Math.max(0, outstanding - 1);
+            leasedBytes = Math.max(0, leasedBytes - lease.capacity);
+            Log.w(TAG, getClass().getSimpleName() + " buffer of " + lease.capacity + " bytes was never released",
+                    lease.leasedAt);
+        }
+    }
+
+    private static class Lease<T> extends WeakReference<T> {
+        final int identity;
+        final long capacity;
+        final Throwable leasedAt = new Throwable("Leased here");
+
+        Lease(T buffer, long capacity, ReferenceQueue<T> queue) {
+            super(buffer, queue);
+            this.identity = System.identityHashCode(buffer);
+            this.capacity = capacity;
+        }
+    }
+}
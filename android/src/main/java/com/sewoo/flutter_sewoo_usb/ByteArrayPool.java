@@ -0,0 +1,38 @@
+package com.sewoo.flutter_sewoo_usb;
+
+// Working buffers only: arrays handed to ESCPOSPrinter.sendByte are held by the SDK's queue and must not be pooled
+public class ByteArrayPool extends BufferPool<byte[]> {
+    private static final long MAX_POOLED_BYTES = 2L * 1024 * 1024;
+
+    private static ByteArrayPool instance;
+
+    private ByteArrayPool() {
+        super(MAX_POOLED_BYTES);
+    }
+
+    public static synchronized ByteArrayPool getInstance() {
+        if (instance == null) {
+            instance = new ByteArrayPool();
+        }
+        return instance;
+    }
+
+    // The array may be longer than requested and is not cleared
+    public byte[] lease(int length) {
+        byte[] array = take(length);
+        if (array == null) {
+            array = new byte[(int) bucketSize(length)];
+        }
+        leased(array);
+        return array;
+    }
+
+    @Override
+    protected long capacityOf(byte[] array) {
+        return array.length;
+    }
+
+    @Override
+    protected void free(byte[] array) {
+    }
+}
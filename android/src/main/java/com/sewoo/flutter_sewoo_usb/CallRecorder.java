@@ -0,0 +1,136 @@
+package com.sewoo.flutter_sewoo_usb;
+
+import io.flutter.plugin.common.MethodCall;
+import io.flutter.plugin.common.StandardMessageCodec;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+// Writes incoming method calls to a compact binary file for the load-test replay tool (tool/loadtest).
+// Layout: "SWR1", start time (epoch ms, big-endian long), then one record per call:
+// type byte (1 = call), varint micros since the previous call, varint method ref
+// (0 = new name follows as varint length + UTF-8, n = n-th name seen), varint length + StandardMessageCodec arguments.
+public class CallRecorder {
+    static final byte[] MAGIC = {'S', 'W', 'R', '1'};
+    static final int RECORD_CALL = 1;
+
+    private static CallRecorder instance;
+    private final Map<String, Integer> methodIds = new HashMap<>();
+    private final byte[] scratch = new byte[8192];
+    private DataOutputStream out;
+    private File file;
+    private long lastNanos;
+    private long calls;
+    private long bytes;
+
+    private CallRecorder() {
+    }
+
+    public static synchronized CallRecorder getInstance() {
+        if (instance == null) {
+            instance = new CallRecorder();
+        }
+        return instance;
+    }
+
+    public synchronized boolean isRecording() {
+        return out != null;
+    }
+
+    public synchronized void start(File file) throws IOException {
+        stop();
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Cannot create " + parent);
+        }
+
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        out.write(MAGIC);
+        out.writeLong(System.currentTimeMillis());
+        this.file = file;
+        methodIds.clear();
+        lastNanos = System.nanoTime();
+        calls = 0;
+        bytes = MAGIC.length + 8;
+    }
+
+    public synchronized void record(MethodCall call) {
+        if (out == null) {
+            return;
+        }
+
+        long now = System.nanoTime();
+        try {
+            out.writeByte(RECORD_CALL);
+            bytes += 1 + writeVarint(out, (now - lastNanos) / 1000);
+            lastNanos = now;
+
+            Integer methodId = methodIds.get(call.method);
+            if (methodId != null) {
+                bytes += writeVarint(out, methodId);
+            } else {
+                methodIds.put(call.method, methodIds.size() + 1);
+                byte[] name = call.method.getBytes(StandardCharsets.UTF_8);
+                bytes += writeVarint(out, 0) + writeVarint(out, name.length) + name.length;
+                out.write(name);
+            }
+
+            ByteBuffer arguments = call.arguments != null
+                    ? StandardMessageCodec.INSTANCE.encodeMessage(call.arguments) : null;
+            int length = arguments != null ? arguments.limit() : 0;
+            bytes += writeVarint(out, length) + length;
+            if (arguments != null) {
+                ByteBuffer view = arguments.duplicate();
+                view.rewind();
+                while (view.hasRemaining()) {
+                    int chunk = Math.min(scratch.length, view.remaining());
+                    view.get(scratch, 0, chunk);
+                    out.write(scratch, 0, chunk);
+                }
+            }
+            calls++;
+        } catch (IOException e) {
+            e.printStackTrace();
+            close();
+        }
+    }
+
+    public synchronized Map<String, Object> stop() {
+        Map<String, Object> summary = new HashMap<>();
+        summary.put("path", file != null ? file.getAbsolutePath() : null);
+        summary.put("calls", calls);
+        summary.put("bytes", bytes);
+        close();
+        return summary;
+    }
+
+    private void close() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            out = null;
+        }
+    }
+
+    private static int writeVarint(OutputStream out, long value) throws IOException {
+        int written = 1;
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+            written++;
+        }
+        out.write((int) value);
+        return written;
+    }
+}
@@ -0,0 +1,128 @@
+package com.sewoo.flutter_sewoo_usb;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class CommandOptimizer {
+    private static final int MAX_PLAIN_FEED_LINES = 3;
+    private static final int LINE_HEIGHT_DOTS = 30;
+    // GS V 66 already advances the last printed line past the cutter
+    private static final int CUTTER_OFFSET_DOTS = 96;
+
+    private long batches = 0;
+    private long totalCommandsSaved = 0;
+    private long totalBytesSaved = 0;
+    private int lastCommandsIn = 0;
+    private int lastCommandsOut = 0;
+    private long lastBytesSaved = 0;
+
+    public List<PrintCommand> optimize(List<PrintCommand> commands, String charset) {
+        List<PrintCommand> out = new ArrayList<>(commands.size());
+        boolean styleClean = false;
+
+        for (PrintCommand command : commands) {
+            PrintCommand last = out.isEmpty() ? null : out.get(out.size() - 1);
+
+            switch (command.type) {
+                case FEED:
+                    if (last != null && isFeed(last)) {
+                        replaceLast(out, feed(last.arg(0) + command.arg(0)), last, command);
+                    } else {
+                        replaceLast(out, feed(command.arg(0)), null, command);
+                    }
+                    break;
+                case CUT:
+                    if (last != null && (last.type == PrintCommand.Type.CUT
+                            || last.type == PrintCommand.Type.FEED_AND_CUT)) {
+                        last.absorb(command);
+                    } else if (last != null && isFeed(last)) {
+                        int dots = Math.max(0, last.arg(0) * LINE_HEIGHT_DOTS - CUTTER_OFFSET_DOTS);
+                        PrintCommand feedAndCut = PrintCommand.merged(PrintCommand.Type.FEED_AND_CUT,
+                                Math.min(255, dots));
+                        replaceLast(out, feedAndCut, last, command);
+                    } else {
+                        out.add(command);
+                    }
+                    break;
+                case RESET:
+                    if (styleClean && last != null) {
+                        last.absorb(command);
+                    } else {
+                        out.add(command);
+                        styleClean = true;
+                    }
+                    break;
+                case STRING:
+                    if (last != null && last.type == PrintCommand.Type.STRING) {
+                        PrintCommand joined = PrintCommand.string(last.text + command.text, null);
+                        replaceLast(out, joined, last, command);
+                    } else {
+                        out.add(command);
+                    }
+                    styleClean = false;
+                    break;
+                case CASH_DRAWER:
+                    out.add(command);
+                    break;
+                default:
+                    out.add(command);
+                    styleClean = false;
+                    break;
+            }
+        }
+
+        record(commands, out, charset);
+        return out;
+    }
+
+    private static boolean isFeed(PrintCommand command) {
+        return command.type == PrintCommand.Type.FEED || command.type == PrintCommand.Type.FEED_LINES;
+    }
+
+    private static PrintCommand feed(int lines) {
+        return PrintCommand.merged(lines <= MAX_PLAIN_FEED_LINES
+                ? PrintCommand.Type.FEED : PrintCommand.Type.FEED_LINES, lines);
+    }
+
+    private static void replaceLast(List<PrintCommand> out, PrintCommand replacement, PrintCommand last,
+                                    PrintCommand command) {
+        if (last != null) {
+            replacement.absorb(last);
+            out.set(out.size() - 1, replacement);
+        } else {
+            out.add(replacement);
+        }
+        replacement.absorb(command);
+    }
+
+    private synchronized void record(List<PrintCommand> in, List<PrintCommand> out, String charset) {
+        long bytesIn = 0;
+        for (PrintCommand command : in) {
+            bytesIn += command.encodedSize(charset);
+        }
+        long bytesOut = 0;
+        for (PrintCommand command : out) {
+            bytesOut += command.encodedSize(charset);
+        }
+
+        batches++;
+        lastCommandsIn = in.size();
+        lastCommandsOut = out.size();
+        lastBytesSaved = bytesIn - bytesOut;
+        totalCommandsSaved += lastCommandsIn - lastCommandsOut;
+        totalBytesSaved += lastBytesSaved;
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("batches", batches);
+        stats.put("lastCommandsIn", lastCommandsIn);
+        stats.put("lastCommandsOut", lastCommandsOut);
+        stats.put("lastBytesSaved", lastBytesSaved);
+        stats.put("totalCommandsSaved", totalCommandsSaved);
+        stats.put("totalBytesSaved", totalBytesSaved);
+        return stats;
+    }
+}
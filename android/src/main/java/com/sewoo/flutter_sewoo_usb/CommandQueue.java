@@ -0,0 +1,125 @@
+package com.sewoo.flutter_sewoo_usb;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+public class CommandQueue {
+    private static final long DEFER_MS = 50;
+    private static final long MAX_DEFER_MS = 250;
+
+    public interface FailureListener {
+        void onCommandFailed(PrintCommand.Type type, Exception error);
+    }
+
+    private static CommandQueue instance;
+    private final List<PrintCommand> pending = new ArrayList<>();
+    private final CommandOptimizer optimizer = new CommandOptimizer();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private ScheduledFuture<?> scheduledFlush;
+    private long batchStarted = 0;
+    private volatile FailureListener failureListener;
+
+    private CommandQueue() {
+    }
+
+    public static synchronized CommandQueue getInstance() {
+        if (instance == null) {
+            instance = new CommandQueue();
+        }
+        return instance;
+    }
+
+    // Without the early acknowledgement the caller hears back only once the command is written, and the batch is
+    // flushed right away instead of waiting for neighbours. Callers opt in, since a failure after the early
+    // acknowledgement only reaches the failure listener
+    public void submit(PrintCommand command, boolean acknowledgeEarly) {
+        boolean deferred = acknowledgeEarly && isDeferrable(command);
+        if (deferred) {
+            if (!PrintPipeline.getInstance().getSink().isConnected()) {
+                command.complete(new IOException("Printer not connected"));
+                return;
+            }
+            PrintCommand.Type type = command.type;
+            command.acknowledge(error -> reportLateFailure(type, error));
+        }
+
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                batchStarted = System.currentTimeMillis();
+            }
+            pending.add(command);
+            if (scheduledFlush != null) {
+                scheduledFlush.cancel(false);
+            }
+
+            long deferMs = Math.min(DEFER_MS, batchStarted + MAX_DEFER_MS - System.currentTimeMillis());
+            if (!deferred || deferMs <= 0) {
+                scheduledFlush = scheduler.schedule(this::flush, 0, TimeUnit.MILLISECONDS);
+            } else {
+                scheduledFlush = scheduler.schedule(this::flush, deferMs, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    // Runs under the pipeline lock so batches and jobs reach the writer in the order they were taken
+    public void flush() {
+        PrintPipeline pipeline = PrintPipeline.getInstance();
+        synchronized (pipeline) {
+            List<PrintCommand> batch;
+            synchronized (this) {
+                if (pending.isEmpty()) {
+                    return;
+                }
+                batch = new ArrayList<>(pending);
+                pending.clear();
+                if (scheduledFlush != null) {
+                    scheduledFlush.cancel(false);
+                    scheduledFlush = null;
+                }
+            }
+            pipeline.submitCommands(optimizer.optimize(batch, pipeline.getSink().getEncoding()));
+        }
+    }
+
+    // Failures of commands that were already acknowledged; the caller's future has completed, so this is the only
+    // place they can be seen
+    public void setFailureListener(FailureListener listener) {
+        this.failureListener = listener;
+    }
+
+    public Map<String, Object> getStats() {
+        return optimizer.getStats();
+    }
+
+    private void reportLateFailure(PrintCommand.Type type, Exception error) {
+        if (error == null) {
+            return;
+        }
+        Log.w("FlutterSewooUsb", "Acknowledged " + type + " command failed: " + error.getMessage());
+        FailureListener listener = failureListener;
+        if (listener != null) {
+            listener.onCommandFailed(type, error);
+        }
+    }
+
+    // Feeds, cuts, resets and plain strings are held briefly so neighbours can be merged into them
+    private static boolean isDeferrable(PrintCommand command) {
+        switch (command.type) {
+            case FEED:
+            case CUT:
+            case RESET:
+            case STRING:
+                return true;
+            default:
+                return false;
+        }
+    }
+}
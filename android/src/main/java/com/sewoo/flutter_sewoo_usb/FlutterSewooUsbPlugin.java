@@ -1,50 +1,113 @@
 package com.sewoo.flutter_sewoo_usb;
 
 import android.content.Context;
-import android.graphics.Typeface;
+import android.content.pm.ApplicationInfo;
 import android.os.Handler;
 import android.os.Looper;
+import android.util.Log;
 
 import androidx.annotation.NonNull;
 
 import io.flutter.embedding.engine.plugins.FlutterPlugin;
+import io.flutter.plugin.common.BinaryMessenger;
 import io.flutter.plugin.common.EventChannel;
 import io.flutter.plugin.common.MethodCall;
 import io.flutter.plugin.common.MethodChannel;
 import io.flutter.plugin.common.MethodChannel.MethodCallHandler;
 import io.flutter.plugin.common.MethodChannel.Result;
+import io.flutter.plugin.common.StandardMethodCodec;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class FlutterSewooUsbPlugin implements FlutterPlugin, MethodCallHandler, EventChannel.StreamHandler {
     private MethodChannel channel;
     private EventChannel eventChannel;
+    private EventChannel jobEventChannel;
+    private EventChannel errorEventChannel;
     private Context context;
     private SerialConnectionManager connectionManager;
     private PrinterOperations printerOperations;
+    private PrintJobManager jobManager;
+    private PrinterProfileCache profileCache;
+    private CommandQueue commandQueue;
+    private PrintSpool printSpool;
+    private CallRecorder callRecorder;
+    private WarmStart warmStart;
     private ASBMonitor asbMonitor;
     private EventChannel.EventSink statusEventSink;
+    private EventChannel.EventSink jobEventSink;
+    private EventChannel.EventSink errorEventSink;
     private Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ReplyDispatcher replies = new ReplyDispatcher(mainHandler);
+    // Blocking printer queries run here instead of on the TaskQueue; threads are reused between calls
+    private final AtomicInteger blockingThreadCount = new AtomicInteger(1);
+    private final ExecutorService blockingExecutor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "sewoo-blocking-" + blockingThreadCount.getAndIncrement());
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ReplyDispatcher.EventTarget jobEvents = event -> {
+        if (jobEventSink != null) {
+            jobEventSink.success(event);
+        }
+    };
+    private final ReplyDispatcher.EventTarget errorEvents = event -> {
+        if (errorEventSink != null) {
+            errorEventSink.success(event);
+        }
+    };
 
     @Override
     public void onAttachedToEngine(@NonNull FlutterPluginBinding flutterPluginBinding) {
         context = flutterPluginBinding.getApplicationContext();
-        channel = new MethodChannel(flutterPluginBinding.getBinaryMessenger(), "flutter_sewoo_usb_printer");
+        BinaryMessenger messenger = flutterPluginBinding.getBinaryMessenger();
+        BinaryMessenger.TaskQueue taskQueue = messenger.makeBackgroundTaskQueue();
+        channel = new MethodChannel(messenger, "flutter_sewoo_usb_printer", StandardMethodCodec.INSTANCE, taskQueue);
         eventChannel = new EventChannel(flutterPluginBinding.getBinaryMessenger(), "flutter_sewoo_usb_printer/status");
+        jobEventChannel = new EventChannel(flutterPluginBinding.getBinaryMessenger(), "flutter_sewoo_usb_printer/jobs");
+        errorEventChannel = new EventChannel(flutterPluginBinding.getBinaryMessenger(), "flutter_sewoo_usb_printer/errors");
         channel.setMethodCallHandler(this);
         eventChannel.setStreamHandler(this);
+        jobEventChannel.setStreamHandler(new JobProgressStreamHandler());
+        errorEventChannel.setStreamHandler(new CommandErrorStreamHandler());
 
         connectionManager = SerialConnectionManager.getInstance();
         printerOperations = PrinterOperations.getInstance();
+        PrintPipeline.getInstance().setSink(printerOperations);
+        jobManager = PrintJobManager.getInstance();
+        profileCache = PrinterProfileCache.getInstance(context);
+        BufferPool.setLeakDetection((context.getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0);
+        commandQueue = CommandQueue.getInstance();
+        printSpool = PrintSpool.getInstance(context);
+        callRecorder = CallRecorder.getInstance();
+        warmStart = WarmStart.getInstance(context);
+        printSpool.setDispatcher((call, completion) -> onMethodCall(call, new SpoolReplayResult(completion)));
+        jobManager.setProgressListener(progress -> replies.event(jobEvents, progress));
+        commandQueue.setFailureListener((type, error) -> {
+            Map<String, Object> event = new HashMap<>();
+            event.put("command", type.name().toLowerCase());
+            event.put("error", error.getMessage());
+            event.put("timestamp", System.currentTimeMillis());
+            replies.event(errorEvents, event);
+        });
         asbMonitor = new ASBMonitor();
     }
 
     @Override
     public void onMethodCall(@NonNull MethodCall call, @NonNull Result result) {
+        if (callRecorder.isRecording() && !printSpool.isReplaying() && !isRecorderCall(call.method)) {
+            callRecorder.record(call);
+        }
+
         switch (call.method) {
             case "getAvailablePorts":
                 getAvailablePorts(result);
@@ -85,6 +148,12 @@ public class FlutterSewooUsbPlugin implements FlutterPlugin, MethodCallHandler,
             case "printPDF":
                 printPDF(call, result);
                 break;
+            case "cancelJob":
+                cancelJob(call, result);
+                break;
+            case "awaitJob":
+                awaitJob(call, result);
+                break;
             case "printAndroidFont":
                 printAndroidFont(call, result);
                 break;
@@ -92,7 +161,7 @@ public class FlutterSewooUsbPlugin implements FlutterPlugin, MethodCallHandler,
                 lineFeed(call, result);
                 break;
             case "cutPaper":
-                cutPaper(result);
+                cutPaper(call, result);
                 break;
             case "openCashDrawer":
                 openCashDrawer(result);
@@ -100,8 +169,51 @@ public class FlutterSewooUsbPlugin implements FlutterPlugin, MethodCallHandler,
             case "checkPrinterStatus":
                 checkPrinterStatus(result);
                 break;
+            case "setStatusCacheDuration":
+                setStatusCacheDuration(call, result);
+                break;
+            case "getPrinterProfile":
+                getPrinterProfile(result);
+                break;
+            case "clearPrinterProfiles":
+                clearPrinterProfiles(result);
+                break;
+            case "getOptimizerStats":
+                getOptimizerStats(result);
+                break;
+            case "getBufferPoolStats":
+                getBufferPoolStats(result);
+                break;
+            case "trimBufferPools":
+                trimBufferPools(result);
+                break;
+            case "setSpoolMode":
+                setSpoolMode(call, result);
+                break;
+            case "getSpoolStatus":
+                getSpoolStatus(result);
+                break;
+            case "clearSpool":
+                clearSpool(result);
+                break;
+            case "startRecording":
+                startRecording(call, result);
+                break;
+            case "stopRecording":
+                stopRecording(result);
+                break;
+            case "warmUp":
+                warmUp(call, result);
+                break;
+            case "getWarmStartSettings":
+                replies.success(result, warmStart.getSettings());
+                break;
+            case "clearWarmStartSettings":
+                warmStart.clear();
+                replies.success(result, null);
+                break;
             case "reset":
-                reset(result);
+                reset(call, result);
                 break;
             case "sendRawData":
                 sendRawData(call, result);
@@ -110,14 +222,14 @@ public class FlutterSewooUsbPlugin implements FlutterPlugin, MethodCallHandler,
                 enableASBMode(call, result);
                 break;
             default:
-                result.notImplemented();
+                replies.notImplemented(result);
                 break;
         }
     }
 
     private void getAvailablePorts(Result result) {
         List<String> ports = connectionManager.getAvailablePorts();
-        result.success(ports);
+        replies.success(result, ports);
     }
 
     private void connect(MethodCall call, Result result) {
@@ -125,19 +237,45 @@ public class FlutterSewooUsbPlugin implements FlutterPlugin, MethodCallHandler,
         Integer baudRate = call.argument("baudRate");
 
         if (portName == null || baudRate == null) {
-            result.error("INVALID_ARGS", "Port name and baud rate are required", null);
+            replies.error(result, "INVALID_ARGS", "Port name and baud rate are required", null);
             return;
         }
 
+        openPort(portName, baudRate, null, new SerialConnectionManager.ConnectionCallback() {
+            @Override
+            public void onSuccess() {
+                replies.success(result, true);
+            }
+
+            @Override
+            public void onFailure(String error) {
+                replies.error(result, "CONNECTION_ERROR", error, null);
+            }
+        });
+    }
+
+    // Shared by connect and warm-up: applies the encoding, loads the port's profile, remembers the port and lets
+    // the spool drain
+    private void openPort(String portName, int baudRate, String encoding,
+                          SerialConnectionManager.ConnectionCallback callback) {
         connectionManager.connect(portName, baudRate, new SerialConnectionManager.ConnectionCallback() {
             @Override
             public void onSuccess() {
-                mainHandler.post(() -> result.success(true));
+                blockingExecutor.execute(() -> {
+                    if (encoding != null && !encoding.equals(printerOperations.getEncoding())) {
+                        printerOperations.setEncoding(encoding);
+                    }
+                    printerOperations.setProfile(profileCache.getOrProbe(portName,
+                            SerialConnectionManager.getUsbIdentity(portName), printerOperations));
+                    warmStart.rememberConnection(portName, baudRate);
+                    callback.onSuccess();
+                    printSpool.wake();
+                });
             }
 
             @Override
             public void onFailure(String error) {
-                mainHandler.post(() -> result.error("CONNECTION_ERROR", error, null));
+                callback.onFailure(error);
             }
         });
     }
@@ -145,14 +283,16 @@ public class FlutterSewooUsbPlugin implements FlutterPlugin, MethodCallHandler,
     private void disconnect(Result result) {
         try {
             connectionManager.disconnect();
-            result.success(null);
+            PrintPipeline.getInstance().shutdownWriters();
+            printerOperations.invalidateStatus();
+            replies.success(result, null);
         } catch (Exception e) {
-            result.error("DISCONNECT_ERROR", e.getMessage(), null);
+            replies.error(result, "DISCONNECT_ERROR", e.getMessage(), null);
         }
     }
 
     private void isConnected(Result result) {
-        result.success(connectionManager.isConnected());
+        replies.success(result, connectionManager.isConnected());
     }
 
     private void getConnectionInfo(Result result) {
@@ -161,9 +301,9 @@ public class FlutterSewooUsbPlugin implements FlutterPlugin, MethodCallHandler,
             info.put("portName", connectionManager.getCurrentPortName());
             info.put("baudRate", connectionManager.getCurrentBaudRate());
             info.put("isConnected", true);
-            result.success(info);
+            replies.success(result, info);
         } else {
-            result.success(null);
+            replies.success(result, null);
         }
     }
 
@@ -171,247 +311,347 @@ public class FlutterSewooUsbPlugin implements FlutterPlugin, MethodCallHandler,
         String encoding = call.argument("encoding");
         if (encoding != null) {
             printerOperations.setEncoding(encoding);
-            result.success(null);
+            warmStart.rememberEncoding(printerOperations.getEncoding());
+            replies.success(result, null);
         } else {
-            result.error("INVALID_ARGS", "Encoding is required", null);
+            replies.error(result, "INVALID_ARGS", "Encoding is required", null);
         }
     }
 
     private void printText(MethodCall call, Result result) {
-        new Thread(() -> {
-            try {
-                String text = call.argument("text");
-                Integer alignment = call.argument("alignment");
-                Integer fontType = call.argument("fontType");
-                Integer textSize = call.argument("textSize");
-
-                if (text == null) {
-                    mainHandler.post(() -> result.error("INVALID_ARGS", "Text is required", null));
-                    return;
-                }
+        String text = call.argument("text");
+        if (text == null) {
+            replies.error(result, "INVALID_ARGS", "Text is required", null);
+            return;
+        }
 
-                printerOperations.printText(text,
-                        alignment != null ? alignment : 0,
-                        fontType != null ? fontType : 0,
-                        textSize != null ? textSize : 0);
-                mainHandler.post(() -> result.success(null));
-            } catch (Exception e) {
-                mainHandler.post(() -> result.error("PRINT_ERROR", e.getMessage(), null));
-            }
-        }).start();
+        if (spooled(call, result, null)) {
+            return;
+        }
+        submitCommand(MethodCommands.text(call::argument, replyTo(result, "PRINT_ERROR")));
     }
 
     private void printString(MethodCall call, Result result) {
-        new Thread(() -> {
-            try {
-                String text = call.argument("text");
-                if (text == null) {
-                    mainHandler.post(() -> result.error("INVALID_ARGS", "Text is required", null));
-                    return;
-                }
-                printerOperations.printString(text);
-                mainHandler.post(() -> result.success(null));
-            } catch (Exception e) {
-                mainHandler.post(() -> result.error("PRINT_ERROR", e.getMessage(), null));
-            }
-        }).start();
+        String text = call.argument("text");
+        if (text == null) {
+            replies.error(result, "INVALID_ARGS", "Text is required", null);
+            return;
+        }
+        if (spooled(call, result, null)) {
+            return;
+        }
+        submitCommand(MethodCommands.string(call::argument, replyTo(result, "PRINT_ERROR")),
+                MethodCommands.acknowledgeEarly(call::argument));
     }
 
     private void printBarcode(MethodCall call, Result result) {
-        new Thread(() -> {
-            try {
-                String data = call.argument("data");
-                Integer barcodeType = call.argument("barcodeType");
-                Integer height = call.argument("height");
-                Integer width = call.argument("width");
-                Integer alignment = call.argument("alignment");
-                Integer hriPosition = call.argument("hriPosition");
-
-                if (data == null) {
-                    mainHandler.post(() -> result.error("INVALID_ARGS", "Barcode data is required", null));
-                    return;
-                }
+        String data = call.argument("data");
+        if (data == null) {
+            replies.error(result, "INVALID_ARGS", "Barcode data is required", null);
+            return;
+        }
 
-                printerOperations.printBarcode(data,
-                        barcodeType != null ? barcodeType : 1,
-                        height != null ? height : 100,
-                        width != null ? width : 2,
-                        alignment != null ? alignment : 1,
-                        hriPosition != null ? hriPosition : 2);
-                mainHandler.post(() -> result.success(null));
-            } catch (Exception e) {
-                mainHandler.post(() -> result.error("PRINT_ERROR", e.getMessage(), null));
-            }
-        }).start();
+        if (spooled(call, result, null)) {
+            return;
+        }
+        submitCommand(MethodCommands.barcode(call::argument, printerOperations.getProfile(),
+                replyTo(result, "PRINT_ERROR")));
     }
 
     private void printQRCode(MethodCall call, Result result) {
-        new Thread(() -> {
-            try {
-                String data = call.argument("data");
-                Integer moduleSize = call.argument("moduleSize");
-                Integer errorLevel = call.argument("errorLevel");
-
-                if (data == null) {
-                    mainHandler.post(() -> result.error("INVALID_ARGS", "QR code data is required", null));
-                    return;
-                }
+        String data = call.argument("data");
+        if (data == null) {
+            replies.error(result, "INVALID_ARGS", "QR code data is required", null);
+            return;
+        }
 
-                printerOperations.printQRCode(data,
-                        moduleSize != null ? moduleSize : 4,
-                        errorLevel != null ? errorLevel : 1);
-                mainHandler.post(() -> result.success(null));
-            } catch (Exception e) {
-                mainHandler.post(() -> result.error("PRINT_ERROR", e.getMessage(), null));
-            }
-        }).start();
+        if (spooled(call, result, null)) {
+            return;
+        }
+        submitCommand(MethodCommands.qrCode(call::argument, printerOperations.getProfile(),
+                replyTo(result, "PRINT_ERROR")));
     }
 
     private void printImage(MethodCall call, Result result) {
-        new Thread(() -> {
-            try {
-                byte[] imageData = call.argument("imageData");
-                if (imageData == null) {
-                    mainHandler.post(() -> result.error("INVALID_ARGS", "Image data is required", null));
-                    return;
-                }
-                printerOperations.printImage(imageData);
-                mainHandler.post(() -> result.success(null));
-            } catch (Exception e) {
-                mainHandler.post(() -> result.error("PRINT_ERROR", e.getMessage(), null));
-            }
-        }).start();
+        byte[] imageData = call.argument("imageData");
+        if (imageData == null) {
+            replies.error(result, "INVALID_ARGS", "Image data is required", null);
+            return;
+        }
+        if (spooled(call, result, "image")) {
+            return;
+        }
+        PrintJob job = submitJob("image", (j, out) -> printerOperations.renderImage(imageData, out));
+        replies.success(result, job.getId());
     }
 
     private void printImageFile(MethodCall call, Result result) {
-        new Thread(() -> {
-            try {
-                String imagePath = call.argument("imagePath");
-                if (imagePath == null) {
-                    mainHandler.post(() -> result.error("INVALID_ARGS", "Image path is required", null));
-                    return;
-                }
-                printerOperations.printImageFile(imagePath);
-                mainHandler.post(() -> result.success(null));
-            } catch (Exception e) {
-                mainHandler.post(() -> result.error("PRINT_ERROR", e.getMessage(), null));
-            }
-        }).start();
+        String imagePath = call.argument("imagePath");
+        if (imagePath == null) {
+            replies.error(result, "INVALID_ARGS", "Image path is required", null);
+            return;
+        }
+        if (spooled(call, result, "imageFile")) {
+            return;
+        }
+        PrintJob job = submitJob("imageFile", (j, out) -> printerOperations.renderImageFile(imagePath, out));
+        replies.success(result, job.getId());
     }
 
     private void printPDF(MethodCall call, Result result) {
-        new Thread(() -> {
-            try {
-                String pdfPath = call.argument("pdfPath");
-                Integer pageNumber = call.argument("pageNumber");
+        String pdfPath = call.argument("pdfPath");
+        Integer pageNumber = call.argument("pageNumber");
 
-                if (pdfPath == null) {
-                    mainHandler.post(() -> result.error("INVALID_ARGS", "PDF path is required", null));
-                    return;
-                }
+        if (pdfPath == null) {
+            replies.error(result, "INVALID_ARGS", "PDF path is required", null);
+            return;
+        }
 
-                printerOperations.printPDF(pdfPath, pageNumber != null ? pageNumber : 0);
-                mainHandler.post(() -> result.success(null));
-            } catch (Exception e) {
-                mainHandler.post(() -> result.error("PRINT_ERROR", e.getMessage(), null));
+        int page = pageNumber != null ? pageNumber : 0;
+        if (spooled(call, result, "pdf")) {
+            return;
+        }
+        PrintJob job = submitJob("pdf", (j, out) -> printerOperations.renderPDF(pdfPath, page, out));
+        replies.success(result, job.getId());
+    }
+
+    private void cancelJob(MethodCall call, Result result) {
+        Integer jobId = call.argument("jobId");
+        if (jobId == null) {
+            replies.error(result, "INVALID_ARGS", "Job ID is required", null);
+            return;
+        }
+        boolean cancelled = jobManager.cancel(jobId);
+        if (cancelled) {
+            printSpool.removeJob(jobId);
+        }
+        replies.success(result, cancelled);
+    }
+
+    private PrintJob submitJob(String type, PrintJobManager.JobTask task) {
+        PrintJob spooledJob = printSpool.getReplayJob();
+        return spooledJob != null ? jobManager.submit(spooledJob, task) : jobManager.submit(type, task);
+    }
+
+    // Answers the call and returns true when it went to the spool instead of the printer
+    private boolean spooled(MethodCall call, Result result, String jobType) {
+        if (printSpool.isReplaying() || !printSpool.shouldSpool()) {
+            return false;
+        }
+
+        PrintJob job = jobType != null ? jobManager.spool(jobType) : null;
+        if (printSpool.add(call, job)) {
+            replies.success(result, job != null ? job.getId() : null);
+        } else {
+            if (job != null) {
+                jobManager.cancel(job.getId());
+            }
+            replies.error(result, "SPOOL_FULL", "Print spool is full", null);
+        }
+        return true;
+    }
+
+    private void awaitJob(MethodCall call, Result result) {
+        Integer jobId = call.argument("jobId");
+        if (jobId == null) {
+            replies.error(result, "INVALID_ARGS", "Job ID is required", null);
+            return;
+        }
+
+        jobManager.awaitJob(jobId, job -> {
+            if (job == null) {
+                replies.error(result, "UNKNOWN_JOB", "No print job with ID " + jobId, null);
+            } else if (job.getState() == PrintJob.State.COMPLETED) {
+                replies.success(result, null);
+            } else if (job.getState() == PrintJob.State.CANCELLED) {
+                replies.error(result, "JOB_CANCELLED", "Print job " + jobId + " was cancelled", null);
+            } else {
+                replies.error(result, "PRINT_ERROR", job.getErrorMessage(), null);
             }
-        }).start();
+        });
     }
 
     private void printAndroidFont(MethodCall call, Result result) {
-        new Thread(() -> {
-            try {
-                String text = call.argument("text");
-                String fontFamily = call.argument("fontFamily");
-                Double fontSize = call.argument("fontSize");
-                Integer alignment = call.argument("alignment");
-
-                if (text == null) {
-                    mainHandler.post(() -> result.error("INVALID_ARGS", "Text is required", null));
-                    return;
-                }
+        String text = call.argument("text");
+        String fontFamily = call.argument("fontFamily");
+        if (text == null) {
+            replies.error(result, "INVALID_ARGS", "Text is required", null);
+            return;
+        }
 
-                Typeface typeface = Typeface.create(fontFamily != null ? fontFamily : "sans-serif", Typeface.NORMAL);
-                float size = fontSize != null ? fontSize.floatValue() : 24.0f;
+        if (fontFamily != null) {
+            warmStart.rememberFontFamily(fontFamily);
+        }
 
-                printerOperations.printAndroidFont(text, typeface, size, alignment != null ? alignment : 0);
-                mainHandler.post(() -> result.success(null));
-            } catch (Exception e) {
-                mainHandler.post(() -> result.error("PRINT_ERROR", e.getMessage(), null));
-            }
-        }).start();
+        if (spooled(call, result, null)) {
+            return;
+        }
+        submitCommand(MethodCommands.androidFont(call::argument, replyTo(result, "PRINT_ERROR")));
     }
 
     private void lineFeed(MethodCall call, Result result) {
-        new Thread(() -> {
-            try {
-                Integer lines = call.argument("lines");
-                printerOperations.lineFeed(lines != null ? lines : 1);
-                mainHandler.post(() -> result.success(null));
-            } catch (Exception e) {
-                mainHandler.post(() -> result.error("PRINT_ERROR", e.getMessage(), null));
-            }
-        }).start();
+        if (spooled(call, result, null)) {
+            return;
+        }
+        submitCommand(MethodCommands.feed(call::argument, replyTo(result, "PRINT_ERROR")),
+                MethodCommands.acknowledgeEarly(call::argument));
     }
 
-    private void cutPaper(Result result) {
-        new Thread(() -> {
-            try {
-                printerOperations.cutPaper();
-                mainHandler.post(() -> result.success(null));
-            } catch (Exception e) {
-                mainHandler.post(() -> result.error("PRINT_ERROR", e.getMessage(), null));
-            }
-        }).start();
+    private void cutPaper(MethodCall call, Result result) {
+        if (spooled(call, result, null)) {
+            return;
+        }
+        submitCommand(PrintCommand.cut(replyTo(result, "PRINT_ERROR")),
+                MethodCommands.acknowledgeEarly(call::argument));
     }
 
     private void openCashDrawer(Result result) {
-        new Thread(() -> {
-            try {
-                printerOperations.openCashDrawer();
-                mainHandler.post(() -> result.success(null));
-            } catch (Exception e) {
-                mainHandler.post(() -> result.error("PRINT_ERROR", e.getMessage(), null));
-            }
-        }).start();
+        submitCommand(PrintCommand.cashDrawer(replyTo(result, "PRINT_ERROR")));
+    }
+
+    private void getOptimizerStats(Result result) {
+        replies.success(result, commandQueue.getStats());
+    }
+
+    private void getBufferPoolStats(Result result) {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("bitmaps", BitmapPool.getInstance().getStats());
+        stats.put("byteArrays", ByteArrayPool.getInstance().getStats());
+        stats.put("intArrays", IntArrayPool.getInstance().getStats());
+        replies.success(result, stats);
+    }
+
+    private void trimBufferPools(Result result) {
+        BitmapPool.getInstance().trim();
+        ByteArrayPool.getInstance().trim();
+        IntArrayPool.getInstance().trim();
+        replies.success(result, true);
     }
 
     private void checkPrinterStatus(Result result) {
-        new Thread(() -> {
+        blockingExecutor.execute(() -> {
             try {
-                Map<String, Object> status = printerOperations.checkPrinterStatus();
-                mainHandler.post(() -> result.success(status));
+                PrinterStatusSnapshot status = printerOperations.getPrinterStatus();
+                replies.success(result, status.toMap());
             } catch (Exception e) {
-                mainHandler.post(() -> result.error("STATUS_ERROR", e.getMessage(), null));
+                replies.error(result, "STATUS_ERROR", e.getMessage(), null);
             }
-        }).start();
+        });
     }
 
-    private void reset(Result result) {
-        new Thread(() -> {
-            try {
-                printerOperations.reset();
-                mainHandler.post(() -> result.success(null));
-            } catch (Exception e) {
-                mainHandler.post(() -> result.error("RESET_ERROR", e.getMessage(), null));
-            }
-        }).start();
+    private void setStatusCacheDuration(MethodCall call, Result result) {
+        Integer milliseconds = call.argument("milliseconds");
+        if (milliseconds == null) {
+            replies.error(result, "INVALID_ARGS", "Duration is required", null);
+            return;
+        }
+        printerOperations.setStatusCacheDuration(milliseconds);
+        replies.success(result, null);
+    }
+
+    private void getPrinterProfile(Result result) {
+        replies.success(result, printerOperations.getProfile().toMap());
+    }
+
+    private void clearPrinterProfiles(Result result) {
+        profileCache.clear();
+        replies.success(result, null);
+    }
+
+    private void setSpoolMode(MethodCall call, Result result) {
+        String mode = call.argument("mode");
+        Integer maxEntries = call.argument("maxEntries");
+        Number maxBytes = call.argument("maxBytes");
+
+        PrintSpool.Mode spoolMode;
+        try {
+            spoolMode = PrintSpool.Mode.valueOf(mode != null ? mode.toUpperCase() : "");
+        } catch (IllegalArgumentException e) {
+            replies.error(result, "INVALID_ARGS", "Mode must be off, memory or disk", null);
+            return;
+        }
+
+        printSpool.configure(spoolMode,
+                maxEntries != null ? maxEntries : PrintSpool.DEFAULT_MAX_ENTRIES,
+                maxBytes != null ? maxBytes.longValue() : PrintSpool.DEFAULT_MAX_BYTES);
+        printSpool.wake();
+        replies.success(result, printSpool.getStatus());
+    }
+
+    private void getSpoolStatus(Result result) {
+        replies.success(result, printSpool.getStatus());
+    }
+
+    private void clearSpool(Result result) {
+        List<PrintJob> jobs = printSpool.clear();
+        for (PrintJob job : jobs) {
+            jobManager.cancel(job.getId());
+        }
+        replies.success(result, printSpool.getStatus());
+    }
+
+    private static boolean isRecorderCall(String method) {
+        return method.equals("startRecording") || method.equals("stopRecording");
+    }
+
+    private void startRecording(MethodCall call, Result result) {
+        String path = call.argument("path");
+        File file = path != null ? new File(path)
+                : new File(new File(context.getFilesDir(), "flutter_sewoo_usb_recordings"),
+                System.currentTimeMillis() + ".swr");
+        try {
+            callRecorder.start(file);
+            replies.success(result, file.getAbsolutePath());
+        } catch (IOException e) {
+            replies.error(result, "RECORDING_ERROR", e.getMessage(), null);
+        }
+    }
+
+    private void stopRecording(Result result) {
+        replies.success(result, callRecorder.stop());
+    }
+
+    private void warmUp(MethodCall call, Result result) {
+        Boolean reconnect = call.argument("reconnect");
+        List<String> logoPaths = call.argument("logoPaths");
+        warmStart.warmUp(reconnect == null || reconnect, logoPaths, this::openPort,
+                report -> replies.success(result, report));
+    }
+
+    private void reset(MethodCall call, Result result) {
+        submitCommand(PrintCommand.reset(replyTo(result, "RESET_ERROR")),
+                MethodCommands.acknowledgeEarly(call::argument));
     }
 
     private void sendRawData(MethodCall call, Result result) {
-        new Thread(() -> {
-            try {
-                byte[] data = call.argument("data");
-                if (data == null) {
-                    mainHandler.post(() -> result.error("INVALID_ARGS", "Data is required", null));
-                    return;
-                }
-                printerOperations.sendRawData(data);
-                mainHandler.post(() -> result.success(null));
-            } catch (Exception e) {
-                mainHandler.post(() -> result.error("SEND_ERROR", e.getMessage(), null));
+        byte[] data = call.argument("data");
+        if (data == null) {
+            replies.error(result, "INVALID_ARGS", "Data is required", null);
+            return;
+        }
+        if (spooled(call, result, null)) {
+            return;
+        }
+        submitCommand(MethodCommands.raw(call::argument, replyTo(result, "SEND_ERROR")));
+    }
+
+    private void submitCommand(PrintCommand command) {
+        submitCommand(command, false);
+    }
+
+    // A replayed spool entry is only removed once written, so it skips the early acknowledgement
+    private void submitCommand(PrintCommand command, boolean acknowledgeEarly) {
+        commandQueue.submit(command, acknowledgeEarly && !printSpool.isReplaying());
+    }
+
+    private PrintCommand.Callback replyTo(Result result, String errorCode) {
+        return error -> {
+            if (error == null) {
+                replies.success(result, null);
+            } else {
+                replies.error(result, errorCode, error.getMessage(), null);
             }
-        }).start();
+        };
     }
 
     private void enableASBMode(MethodCall call, Result result) {
@@ -422,9 +662,9 @@ public class FlutterSewooUsbPlugin implements FlutterPlugin, MethodCallHandler,
             } else {
                 asbMonitor.stop();
             }
-            result.success(null);
+            replies.success(result, null);
         } else {
-            result.error("INVALID_ARGS", "Enable flag is required", null);
+            replies.error(result, "INVALID_ARGS", "Enable flag is required", null);
         }
     }
 
@@ -448,6 +688,11 @@ public class FlutterSewooUsbPlugin implements FlutterPlugin, MethodCallHandler,
     public void onDetachedFromEngine(@NonNull FlutterPluginBinding binding) {
         channel.setMethodCallHandler(null);
         eventChannel.setStreamHandler(null);
+        jobEventChannel.setStreamHandler(null);
+        errorEventChannel.setStreamHandler(null);
+        jobManager.setProgressListener(null);
+        commandQueue.setFailureListener(null);
+        printSpool.setDispatcher(null);
         if (asbMonitor != null) {
             asbMonitor.stop();
         }
@@ -456,11 +701,71 @@ public class FlutterSewooUsbPlugin implements FlutterPlugin, MethodCallHandler,
         } catch (Exception e) {
             e.printStackTrace();
         }
+        PrintPipeline.getInstance().shutdownWriters();
+    }
+
+    // Job calls answer with the job ID as soon as the job is queued, so their entry completes when the job finishes
+    private class SpoolReplayResult implements Result {
+        private final PrintSpool.Completion completion;
+
+        SpoolReplayResult(PrintSpool.Completion completion) {
+            this.completion = completion;
+        }
+
+        @Override
+        public void success(Object result) {
+            if (result instanceof Integer) {
+                jobManager.awaitJob((Integer) result, job -> completion.complete(
+                        job != null && job.getState() == PrintJob.State.FAILED ? job.getErrorMessage() : null));
+            } else {
+                completion.complete(null);
+            }
+        }
+
+        @Override
+        public void error(String errorCode, String errorMessage, Object errorDetails) {
+            Log.w("FlutterSewooUsb", "Spooled call failed: " + errorCode + " " + errorMessage);
+            completion.complete(errorCode + ": " + errorMessage);
+        }
+
+        @Override
+        public void notImplemented() {
+            completion.complete(null);
+        }
+    }
+
+    private class JobProgressStreamHandler implements EventChannel.StreamHandler {
+        @Override
+        public void onListen(Object arguments, EventChannel.EventSink events) {
+            jobEventSink = events;
+        }
+
+        @Override
+        public void onCancel(Object arguments) {
+            jobEventSink = null;
+        }
+    }
+
+    private class CommandErrorStreamHandler implements EventChannel.StreamHandler {
+        @Override
+        public void onListen(Object arguments, EventChannel.EventSink events) {
+            errorEventSink = events;
+        }
+
+        @Override
+        public void onCancel(Object arguments) {
+            errorEventSink = null;
+        }
     }
 
     private class ASBMonitor {
         private Timer timer;
-        private EventChannel.EventSink eventSink;
+        private volatile EventChannel.EventSink eventSink;
+        private final ReplyDispatcher.EventTarget statusEvents = event -> {
+            if (eventSink != null) {
+                eventSink.success(event);
+            }
+        };
 
         void setEventSink(EventChannel.EventSink sink) {
             this.eventSink = sink;
@@ -477,20 +782,10 @@ public class FlutterSewooUsbPlugin implements FlutterPlugin, MethodCallHandler,
                 public void run() {
                     if (connectionManager.isConnected() && eventSink != null) {
                         try {
-                            Map<String, Object> status = printerOperations.checkPrinterStatus();
-                            mainHandler.post(() -> {
-                                if (eventSink != null) {
-                                    eventSink.success(status);
-                                }
-                            });
+                            PrinterStatusSnapshot status = printerOperations.getPrinterStatus();
+                            replies.event(statusEvents, status.toMap());
                         } catch (Exception e) {
-                            mainHandler.post(() -> {
-                                if (eventSink != null) {
-                                    Map<String, Object> errorStatus = new HashMap<>();
-                                    errorStatus.put("error", e.getMessage());
-                                    eventSink.success(errorStatus);
-                                }
-                            });
+                            replies.event(statusEvents, PrinterStatusSnapshot.failed(e.getMessage()).toMap());
                         }
                     }
                 }
@@ -0,0 +1,38 @@
+package com.sewoo.flutter_sewoo_usb;
+
+// Pixel scratch rows for Bitmap.getPixels/setPixels
+public class IntArrayPool extends BufferPool<int[]> {
+    private static final long MAX_POOLED_BYTES = 1024L * 1024;
+
+    private static IntArrayPool instance;
+
+    private IntArrayPool() {
+        super(MAX_POOLED_BYTES);
+    }
+
+    public static synchronized IntArrayPool getInstance() {
+        if (instance == null) {
+            instance = new IntArrayPool();
+        }
+        return instance;
+    }
+
+    // The array may be longer than requested and is not cleared
+    public int[] lease(int length) {
+        int[] array = take((long) length * 4);
+        if (array == null) {
+            array = new int[(int) (bucketSize((long) length * 4) / 4)];
+        }
+        leased(array);
+        return array;
+    }
+
+    @Override
+    protected long capacityOf(int[] array) {
+        return (long) array.length * 4;
+    }
+
+    @Override
+    protected void free(int[] array) {
+    }
+}
@@ -0,0 +1,67 @@
+package com.sewoo.flutter_sewoo_usb;
+
+// The PrintCommand each print method queues, with the defaults for arguments the caller left out. The plugin and
+// tool/loadtest both build their commands here, so a replay queues exactly what the plugin would
+final class MethodCommands {
+    // MethodCall.argument on the device, the recorded argument map in a replay
+    interface Arguments {
+        Object get(String key);
+    }
+
+    private MethodCommands() {
+    }
+
+    static PrintCommand text(Arguments args, PrintCommand.Callback callback) {
+        return PrintCommand.text(string(args, "text"), integer(args, "alignment", 0), integer(args, "fontType", 0),
+                integer(args, "textSize", 0), callback);
+    }
+
+    static PrintCommand string(Arguments args, PrintCommand.Callback callback) {
+        return PrintCommand.string(string(args, "text"), callback);
+    }
+
+    // Bar width and QR module size follow the connected model unless the caller sets them
+    static PrintCommand barcode(Arguments args, PrinterProfile profile, PrintCommand.Callback callback) {
+        return PrintCommand.barcode(string(args, "data"), integer(args, "barcodeType", 1),
+                integer(args, "height", 100), integer(args, "width", profile.getBarcodeWidth()),
+                integer(args, "alignment", 1), integer(args, "hriPosition", 2), callback);
+    }
+
+    static PrintCommand qrCode(Arguments args, PrinterProfile profile, PrintCommand.Callback callback) {
+        return PrintCommand.qrCode(string(args, "data"), integer(args, "moduleSize", profile.getQrModuleSize()),
+                integer(args, "errorLevel", 1), callback);
+    }
+
+    static PrintCommand androidFont(Arguments args, PrintCommand.Callback callback) {
+        Object fontFamily = args.get("fontFamily");
+        Object fontSize = args.get("fontSize");
+        return PrintCommand.androidFont(string(args, "text"), fontFamily instanceof String ? (String) fontFamily : null,
+                fontSize instanceof Number ? ((Number) fontSize).floatValue() : 24.0f, integer(args, "alignment", 0),
+                callback);
+    }
+
+    static PrintCommand feed(Arguments args, PrintCommand.Callback callback) {
+        return PrintCommand.feed(integer(args, "lines", 1), callback);
+    }
+
+    static PrintCommand raw(Arguments args, PrintCommand.Callback callback) {
+        Object data = args.get("data");
+        return PrintCommand.raw(data instanceof byte[] ? (byte[]) data : new byte[0], callback);
+    }
+
+    // Feeds, cuts, resets and strings are answered before they are written only when the call asks for it
+    static boolean acknowledgeEarly(Arguments args) {
+        return Boolean.TRUE.equals(args.get("acknowledgeEarly"));
+    }
+
+    // The plugin rejects a call without its required text or data before building the command
+    private static String string(Arguments args, String key) {
+        Object value = args.get(key);
+        return value instanceof String ? (String) value : "";
+    }
+
+    private static int integer(Arguments args, String key, int fallback) {
+        Object value = args.get(key);
+        return value instanceof Number ? ((Number) value).intValue() : fallback;
+    }
+}
@@ -0,0 +1,48 @@
+package com.sewoo.flutter_sewoo_usb;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+public class MpscRingBuffer<E> extends RingBuffer<E> {
+    private final AtomicReferenceArray<E> buffer;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    public MpscRingBuffer(int capacity) {
+        super(capacity);
+        buffer = new AtomicReferenceArray<>(this.capacity);
+    }
+
+    @Override
+    public boolean offer(E element) {
+        while (true) {
+            long currentTail = tail.get();
+            if (currentTail - head.get() >= capacity) {
+                return false;
+            }
+            if (tail.compareAndSet(currentTail, currentTail + 1)) {
+                buffer.set((int) currentTail & mask, element);
+                return true;
+            }
+        }
+    }
+
+    // A slot claimed but not yet filled reads as empty, so elements come out in claim order
+    @Override
+    public E poll() {
+        long currentHead = head.get();
+        int index = (int) currentHead & mask;
+        E element = buffer.get(index);
+        if (element == null) {
+            return null;
+        }
+        buffer.lazySet(index, null);
+        head.lazySet(currentHead + 1);
+        return element;
+    }
+
+    @Override
+    public int size() {
+        return (int) (tail.get() - head.get());
+    }
+}
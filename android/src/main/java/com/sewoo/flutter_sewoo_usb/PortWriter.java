@@ -0,0 +1,145 @@
+package com.sewoo.flutter_sewoo_usb;
+
+import java.util.concurrent.locks.LockSupport;
+
+// The only thread that talks to the printer on a port; streams are written whole and in submission order
+public class PortWriter implements Runnable {
+    private static final int STREAM_QUEUE_CAPACITY = 256;
+    private static final long ENQUEUE_BACKOFF_NANOS = 200_000L;
+
+    private final String portName;
+    private final PrinterSink printer;
+    private final MpscRingBuffer<SegmentStream> streams = new MpscRingBuffer<>(STREAM_QUEUE_CAPACITY);
+    private final Thread thread;
+
+    PortWriter(String portName, PrinterSink printer) {
+        this.portName = portName;
+        this.printer = printer;
+        this.thread = new Thread(this, "sewoo-writer-" + portName);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    public String getPortName() {
+        return portName;
+    }
+
+    // Back-pressure only; an interrupt here would lose the stream and leave its job unfinished
+    void enqueue(SegmentStream stream) {
+        while (!streams.offer(stream)) {
+            LockSupport.parkNanos(this, ENQUEUE_BACKOFF_NANOS);
+        }
+        streams.signal();
+    }
+
+    // Streams already queued are still written (they fail fast once the port is gone), then the thread exits
+    void shutdown() {
+        streams.close();
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            try {
+                // Read before polling: a stream offered ahead of close is then always seen before the exit
+                boolean closed = streams.isClosed();
+                SegmentStream stream = streams.poll();
+                if (stream == null) {
+                    if (closed) {
+                        return;
+                    }
+                    streams.await();
+                    continue;
+                }
+                if (stream.getJob() != null) {
+                    writeJob(stream);
+                } else {
+                    writeCommands(stream);
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void writeCommands(SegmentStream stream) throws InterruptedException {
+        PrintSegment segment;
+        while ((segment = stream.next()) != null) {
+            try {
+                printer.writeSegment(segment);
+                segment.command.complete(null);
+            } catch (Exception e) {
+                segment.command.complete(e);
+            }
+        }
+    }
+
+    private void writeJob(SegmentStream stream) throws InterruptedException {
+        PrintJob job = stream.getJob();
+        PrintJobManager jobManager = PrintJobManager.getInstance();
+        jobManager.started(job);
+
+        Exception error = null;
+        boolean written = false;
+        // Written but possibly still queued in the SDK; its progress is reported once it has left the link
+        PrintSegment queued = null;
+        PrintSegment segment;
+        while ((segment = stream.next()) != null) {
+            // Discard what is still queued after a cancel or failure; abort() stops the renderer adding more
+            if (error != null || job.isCancelRequested()) {
+                stream.abort();
+                segment.discard();
+                continue;
+            }
+            try {
+                printer.writeSegment(segment);
+                written = true;
+                // One band stays queued behind the one on the wire, so the link does not idle between bands
+                printer.awaitAllButLastDrained();
+                if (queued != null) {
+                    reportSent(jobManager, job, queued);
+                }
+                queued = segment;
+            } catch (Exception e) {
+                stream.abort();
+                error = e;
+            }
+        }
+
+        if (error == null) {
+            error = stream.getError();
+        }
+        // A job only completes once the paper has caught up; a cancel skips the wait and clears the queue instead
+        if (error == null && queued != null && !job.isCancelRequested()) {
+            try {
+                printer.awaitDrained();
+                reportSent(jobManager, job, queued);
+            } catch (Exception e) {
+                error = e;
+            }
+        }
+        if (job.isCancelRequested()) {
+            if (written) {
+                try {
+                    printer.resetAfterCancel();
+                } catch (Exception resetError) {
+                    resetError.printStackTrace();
+                }
+            }
+            job.setState(PrintJob.State.CANCELLED);
+        } else if (error != null) {
+            job.fail(error.getMessage());
+        } else {
+            job.setState(PrintJob.State.COMPLETED);
+        }
+        jobManager.finish(job);
+    }
+
+    private static void reportSent(PrintJobManager jobManager, PrintJob job, PrintSegment segment) {
+        if (segment.kind == PrintSegment.Kind.PAGE_END) {
+            job.pageDone();
+        }
+        job.addBytesSent(segment.size());
+        jobManager.reportProgress(job);
+    }
+}
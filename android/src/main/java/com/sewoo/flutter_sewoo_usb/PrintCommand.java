@@ -0,0 +1,150 @@
+package com.sewoo.flutter_sewoo_usb;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class PrintCommand {
+    public enum Type {
+        TEXT, STRING, BARCODE, QR_CODE, ANDROID_FONT, FEED, FEED_LINES, CUT, FEED_AND_CUT, CASH_DRAWER, RESET, RAW
+    }
+
+    public interface Callback {
+        void onComplete(Exception error);
+    }
+
+    final Type type;
+    String text;
+    byte[] data;
+    String fontFamily;
+    float fontSize;
+    int[] args;
+    RasterImage rendered;
+    private final List<Callback> callbacks = new ArrayList<>(1);
+
+    private PrintCommand(Type type, Callback callback) {
+        this.type = type;
+        if (callback != null) {
+            callbacks.add(callback);
+        }
+    }
+
+    public static PrintCommand text(String text, int alignment, int fontType, int textSize, Callback callback) {
+        PrintCommand command = new PrintCommand(Type.TEXT, callback);
+        command.text = text;
+        command.args = new int[]{alignment, fontType, textSize};
+        return command;
+    }
+
+    public static PrintCommand string(String text, Callback callback) {
+        PrintCommand command = new PrintCommand(Type.STRING, callback);
+        command.text = text;
+        return command;
+    }
+
+    public static PrintCommand barcode(String data, int barcodeType, int height, int width, int alignment,
+                                       int hriPosition, Callback callback) {
+        PrintCommand command = new PrintCommand(Type.BARCODE, callback);
+        command.text = data;
+        command.args = new int[]{barcodeType, height, width, alignment, hriPosition};
+        return command;
+    }
+
+    public static PrintCommand qrCode(String data, int moduleSize, int errorLevel, Callback callback) {
+        PrintCommand command = new PrintCommand(Type.QR_CODE, callback);
+        command.text = data;
+        command.args = new int[]{moduleSize, errorLevel};
+        return command;
+    }
+
+    public static PrintCommand androidFont(String text, String fontFamily, float fontSize, int alignment,
+                                           Callback callback) {
+        PrintCommand command = new PrintCommand(Type.ANDROID_FONT, callback);
+        command.text = text;
+        command.fontFamily = fontFamily;
+        command.fontSize = fontSize;
+        command.args = new int[]{alignment};
+        return command;
+    }
+
+    public static PrintCommand feed(int lines, Callback callback) {
+        PrintCommand command = new PrintCommand(Type.FEED, callback);
+        command.args = new int[]{lines};
+        return command;
+    }
+
+    public static PrintCommand cut(Callback callback) {
+        return new PrintCommand(Type.CUT, callback);
+    }
+
+    public static PrintCommand cashDrawer(Callback callback) {
+        return new PrintCommand(Type.CASH_DRAWER, callback);
+    }
+
+    public static PrintCommand reset(Callback callback) {
+        return new PrintCommand(Type.RESET, callback);
+    }
+
+    public static PrintCommand raw(byte[] data, Callback callback) {
+        PrintCommand command = new PrintCommand(Type.RAW, callback);
+        command.data = data;
+        return command;
+    }
+
+    static PrintCommand merged(Type type, int arg) {
+        PrintCommand command = new PrintCommand(type, null);
+        command.args = new int[]{arg};
+        return command;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    int arg(int index) {
+        return args[index];
+    }
+
+    void absorb(PrintCommand other) {
+        callbacks.addAll(other.callbacks);
+    }
+
+    // Replies before execution; used for buffered commands the queue may still rewrite. The caller has its answer,
+    // so the outcome of the actual write goes to lateCallback instead
+    void acknowledge(Callback lateCallback) {
+        complete(null);
+        callbacks.clear();
+        callbacks.add(lateCallback);
+    }
+
+    void complete(Exception error) {
+        for (Callback callback : callbacks) {
+            callback.onComplete(error);
+        }
+    }
+
+    // Bytes this command puts on the wire; styled text and symbols are approximated by their payload
+    int encodedSize(String charset) {
+        switch (type) {
+            case FEED:
+                return args[0];
+            case FEED_LINES:
+                return 3 * ((args[0] + 254) / 255);
+            case CUT:
+            case RESET:
+                return 2;
+            case CASH_DRAWER:
+                return 5;
+            case FEED_AND_CUT:
+                return 4;
+            case RAW:
+                return data.length;
+            default:
+                try {
+                    return text.getBytes(charset).length;
+                } catch (UnsupportedEncodingException e) {
+                    return text.length();
+                }
+        }
+    }
+}
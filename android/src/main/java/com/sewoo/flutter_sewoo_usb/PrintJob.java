@@ -0,0 +1,131 @@
+package com.sewoo.flutter_sewoo_usb;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class PrintJob {
+    public enum State {
+        SPOOLED, QUEUED, RUNNING, COMPLETED, FAILED, CANCELLED;
+
+        boolean isFinished() {
+            return this == COMPLETED || this == FAILED || this == CANCELLED;
+        }
+    }
+
+    private final int id;
+    private final String type;
+    private volatile State state = State.QUEUED;
+    private volatile boolean cancelRequested = false;
+    private volatile String errorMessage;
+    private volatile long bytesSent = 0;
+    private volatile long totalBytes = 0;
+    private volatile int pagesDone = 0;
+    private volatile int totalPages = 0;
+    // Written by the task-queue thread and the writer thread
+    private volatile long lastProgressReport = 0;
+    private volatile State lastReportedState;
+
+    PrintJob(int id, String type) {
+        this.id = id;
+        this.type = type;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    public boolean isCancelRequested() {
+        return cancelRequested;
+    }
+
+    public void checkCancelled() {
+        if (cancelRequested) {
+            throw new JobCancelledException(id);
+        }
+    }
+
+    void requestCancel() {
+        cancelRequested = true;
+    }
+
+    void setState(State state) {
+        this.state = state;
+    }
+
+    void fail(String errorMessage) {
+        this.errorMessage = errorMessage;
+        this.state = State.FAILED;
+    }
+
+    // Starts over as a spooled job with the same ID; used when a replay failed because the printer went away
+    void respool() {
+        errorMessage = null;
+        bytesSent = 0;
+        totalBytes = 0;
+        pagesDone = 0;
+        totalPages = 0;
+        state = State.SPOOLED;
+    }
+
+    public void addTotalBytes(long bytes) {
+        totalBytes += bytes;
+    }
+
+    public void addBytesSent(long bytes) {
+        bytesSent += bytes;
+    }
+
+    public void setTotalPages(int totalPages) {
+        this.totalPages = totalPages;
+    }
+
+    public void pageDone() {
+        pagesDone++;
+    }
+
+    // State changes always go out; only byte progress within a state is throttled
+    boolean shouldReportProgress(long now, long intervalMs) {
+        State current = state;
+        if (current == lastReportedState && now - lastProgressReport < intervalMs) {
+            return false;
+        }
+        lastReportedState = current;
+        lastProgressReport = now;
+        return true;
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new HashMap<>();
+        map.put("jobId", id);
+        map.put("type", type);
+        map.put("state", state.name().toLowerCase());
+        map.put("bytesSent", bytesSent);
+        map.put("totalBytes", totalBytes);
+        map.put("pagesDone", pagesDone);
+        map.put("totalPages", totalPages);
+        if (errorMessage != null) {
+            map.put("error", errorMessage);
+        }
+        return map;
+    }
+
+    public static class JobCancelledException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        JobCancelledException(int jobId) {
+            super("Print job " + jobId + " was cancelled");
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.sewoo.flutter_sewoo_usb;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class PrintJobManager {
+    private static final long PROGRESS_INTERVAL_MS = 100;
+    private static final int MAX_FINISHED_JOBS = 32;
+
+    private static PrintJobManager instance;
+    private final AtomicInteger nextJobId = new AtomicInteger(1);
+    private final Map<Integer, PrintJob> activeJobs = new HashMap<>();
+    private final Map<Integer, PrintJob> finishedJobs = new LinkedHashMap<Integer, PrintJob>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, PrintJob> eldest) {
+            return size() > MAX_FINISHED_JOBS;
+        }
+    };
+    private final Map<Integer, List<JobCallback>> waiters = new HashMap<>();
+    private volatile ProgressListener progressListener;
+
+    private PrintJobManager() {
+    }
+
+    public static synchronized PrintJobManager getInstance() {
+        if (instance == null) {
+            instance = new PrintJobManager();
+        }
+        return instance;
+    }
+
+    public interface JobTask {
+        void render(PrintJob job, SegmentStream out) throws Exception;
+    }
+
+    public interface JobCallback {
+        void onFinished(PrintJob job);
+    }
+
+    public interface ProgressListener {
+        void onProgress(Map<String, Object> progress);
+    }
+
+    public void setProgressListener(ProgressListener listener) {
+        this.progressListener = listener;
+    }
+
+    public PrintJob submit(String type, JobTask task) {
+        return submit(register(type, PrintJob.State.QUEUED), task);
+    }
+
+    // Runs a job created earlier by spool(); a cancelled one is left as it is
+    public PrintJob submit(PrintJob job, JobTask task) {
+        synchronized (this) {
+            if (job.getState().isFinished()) {
+                return job;
+            }
+            job.setState(PrintJob.State.QUEUED);
+        }
+        reportProgress(job);
+        PrintPipeline.getInstance().submitJob(job, out -> task.render(job, out));
+        return job;
+    }
+
+    // Gives a spooled call a job ID right away so the app can track and cancel it before it runs
+    public PrintJob spool(String type) {
+        PrintJob job = register(type, PrintJob.State.SPOOLED);
+        reportProgress(job);
+        return job;
+    }
+
+    // A spooled job whose replay failed goes back to the spool under its old ID instead of staying failed
+    void respool(PrintJob job) {
+        synchronized (this) {
+            finishedJobs.remove(job.getId());
+            job.respool();
+            activeJobs.put(job.getId(), job);
+        }
+        reportProgress(job);
+    }
+
+    private PrintJob register(String type, PrintJob.State state) {
+        PrintJob job = new PrintJob(nextJobId.getAndIncrement(), type);
+        job.setState(state);
+        synchronized (this) {
+            activeJobs.put(job.getId(), job);
+        }
+        return job;
+    }
+
+    public boolean cancel(int jobId) {
+        PrintJob job;
+        boolean spooled;
+        synchronized (this) {
+            job = activeJobs.get(jobId);
+            if (job == null) {
+                return false;
+            }
+            job.requestCancel();
+            spooled = job.getState() == PrintJob.State.SPOOLED;
+            if (spooled) {
+                job.setState(PrintJob.State.CANCELLED);
+            }
+        }
+        if (spooled) {
+            finish(job);
+        }
+        return true;
+    }
+
+    public void awaitJob(int jobId, JobCallback callback) {
+        PrintJob finished;
+        synchronized (this) {
+            if (activeJobs.containsKey(jobId)) {
+                List<JobCallback> callbacks = waiters.get(jobId);
+                if (callbacks == null) {
+                    callbacks = new ArrayList<>();
+                    waiters.put(jobId, callbacks);
+                }
+                callbacks.add(callback);
+                return;
+            }
+            finished = finishedJobs.get(jobId);
+        }
+        callback.onFinished(finished);
+    }
+
+    public void reportProgress(PrintJob job) {
+        ProgressListener listener = progressListener;
+        if (listener != null && job.shouldReportProgress(System.currentTimeMillis(), PROGRESS_INTERVAL_MS)) {
+            listener.onProgress(job.toMap());
+        }
+    }
+
+    void started(PrintJob job) {
+        if (!job.isCancelRequested()) {
+            job.setState(PrintJob.State.RUNNING);
+            reportProgress(job);
+        }
+    }
+
+    void finish(PrintJob job) {
+        List<JobCallback> callbacks;
+        synchronized (this) {
+            activeJobs.remove(job.getId());
+            finishedJobs.put(job.getId(), job);
+            callbacks = waiters.remove(job.getId());
+        }
+        reportProgress(job);
+        if (callbacks != null) {
+            for (JobCallback callback : callbacks) {
+                callback.onFinished(job);
+            }
+        }
+    }
+}
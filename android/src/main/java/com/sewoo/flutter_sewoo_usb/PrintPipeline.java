@@ -0,0 +1,113 @@
+package com.sewoo.flutter_sewoo_usb;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Render workers turn jobs into segments in parallel; each port's writer prints the streams in submission order
+public class PrintPipeline {
+    private static final long WORKER_KEEP_ALIVE_SECONDS = 30;
+
+    private static PrintPipeline instance;
+    private final ThreadPoolExecutor renderPool;
+    private final Map<String, PortWriter> writers = new HashMap<>();
+    private volatile PrinterSink sink;
+
+    public interface Renderer {
+        void render(SegmentStream out) throws Exception;
+    }
+
+    private PrintPipeline() {
+        int workers = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        AtomicInteger threadCount = new AtomicInteger(1);
+        ThreadFactory factory = runnable -> {
+            Thread thread = new Thread(runnable, "sewoo-render-" + threadCount.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+        renderPool = new ThreadPoolExecutor(workers, workers, WORKER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), factory);
+        renderPool.allowCoreThreadTimeOut(true);
+    }
+
+    public static synchronized PrintPipeline getInstance() {
+        if (instance == null) {
+            instance = new PrintPipeline();
+        }
+        return instance;
+    }
+
+    // Set once when the plugin attaches, before anything is submitted
+    public void setSink(PrinterSink sink) {
+        this.sink = sink;
+    }
+
+    public PrinterSink getSink() {
+        return sink;
+    }
+
+    // Starts the render threads now instead of on the first job; idle ones still time out
+    public void prestartWorkers() {
+        renderPool.prestartAllCoreThreads();
+    }
+
+    // Pending commands are flushed first so a job never overtakes text queued before it
+    public void submitJob(PrintJob job, Renderer renderer) {
+        synchronized (this) {
+            CommandQueue.getInstance().flush();
+            submit(SegmentStream.forJob(job), renderer);
+        }
+    }
+
+    synchronized void submitCommands(List<PrintCommand> commands) {
+        PrinterSink printer = sink;
+        submit(SegmentStream.forCommands(commands.size()), out -> {
+            for (PrintCommand command : commands) {
+                try {
+                    printer.prepareCommand(command);
+                } catch (Exception e) {
+                    command.complete(e);
+                    continue;
+                }
+                out.add(PrintSegment.command(command));
+            }
+        });
+    }
+
+    private void submit(SegmentStream stream, Renderer renderer) {
+        writerFor(sink.getPortName()).enqueue(stream);
+
+        renderPool.execute(() -> {
+            try {
+                renderer.render(stream);
+                stream.close();
+            } catch (PrintJob.JobCancelledException e) {
+                stream.close();
+            } catch (Exception e) {
+                stream.fail(e);
+            }
+        });
+    }
+
+    // Called on disconnect and detach; the next submit starts a fresh writer for whatever port is open then
+    public synchronized void shutdownWriters() {
+        for (PortWriter writer : writers.values()) {
+            writer.shutdown();
+        }
+        writers.clear();
+    }
+
+    private PortWriter writerFor(String portName) {
+        PortWriter writer = writers.get(portName);
+        if (writer == null) {
+            writer = new PortWriter(portName, sink);
+            writers.put(portName, writer);
+        }
+        return writer;
+    }
+}
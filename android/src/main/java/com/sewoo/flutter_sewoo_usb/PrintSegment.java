@@ -0,0 +1,53 @@
+package com.sewoo.flutter_sewoo_usb;
+
+public final class PrintSegment {
+    public enum Kind {
+        BYTES, BITMAP, COMMAND, PAGE_END
+    }
+
+    private static final PrintSegment PAGE_END = new PrintSegment(Kind.PAGE_END, null, null, 0, null, 0);
+
+    final Kind kind;
+    final byte[] bytes;
+    final RasterImage band;
+    final int alignment;
+    final PrintCommand command;
+    private final int size;
+
+    private PrintSegment(Kind kind, byte[] bytes, RasterImage band, int alignment, PrintCommand command, int size) {
+        this.kind = kind;
+        this.bytes = bytes;
+        this.band = band;
+        this.alignment = alignment;
+        this.command = command;
+        this.size = size;
+    }
+
+    public static PrintSegment bytes(byte[] bytes) {
+        return new PrintSegment(Kind.BYTES, bytes, null, 0, null, bytes.length);
+    }
+
+    // Printed through the SDK so it can apply the model's compressed raster command; the segment owns the band
+    public static PrintSegment bitmap(RasterImage band, int alignment) {
+        return new PrintSegment(Kind.BITMAP, null, band, alignment, null, band.getWidthBytes() * band.getHeight());
+    }
+
+    public static PrintSegment command(PrintCommand command) {
+        return new PrintSegment(Kind.COMMAND, null, null, 0, command, 0);
+    }
+
+    public static PrintSegment pageEnd() {
+        return PAGE_END;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Frees resources of a segment that will not be written
+    void discard() {
+        if (band != null) {
+            band.release();
+        }
+    }
+}
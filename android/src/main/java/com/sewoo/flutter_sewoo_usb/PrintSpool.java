@@ -0,0 +1,464 @@
+package com.sewoo.flutter_sewoo_usb;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import io.flutter.plugin.common.MethodCall;
+import io.flutter.plugin.common.StandardMessageCodec;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Holds print calls while the printer is unreachable and replays them in order once it recovers
+public class PrintSpool {
+    private static final String PREFS_NAME = "flutter_sewoo_usb_printer.spool";
+    private static final String KEY_MODE = "mode";
+    private static final String KEY_MAX_ENTRIES = "maxEntries";
+    private static final String KEY_MAX_BYTES = "maxBytes";
+    private static final String SPOOL_DIR = "flutter_sewoo_usb_spool";
+    private static final String FILE_SUFFIX = ".spool";
+    private static final int FILE_MAGIC = 0x53505331;
+    private static final long CHECK_INTERVAL_MS = 1000;
+    static final int DEFAULT_MAX_ENTRIES = 200;
+    static final long DEFAULT_MAX_BYTES = 16L * 1024 * 1024;
+
+    public enum Mode {
+        OFF, MEMORY, DISK
+    }
+
+    public interface Completion {
+        void complete(String error);
+    }
+
+    // The completion fires once the call's command is written or its job has finished, with null on success
+    public interface Dispatcher {
+        void dispatch(MethodCall call, Completion completion);
+    }
+
+    private static PrintSpool instance;
+    private final File directory;
+    private final SharedPreferences preferences;
+    private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private Mode mode = Mode.OFF;
+    private int maxEntries = DEFAULT_MAX_ENTRIES;
+    private long maxBytes = DEFAULT_MAX_BYTES;
+    private long spooledBytes = 0;
+    // Seeded from the clock so entries from this run sort after any left on disk by an earlier one
+    private long nextSequence = System.currentTimeMillis() * 1000;
+    private long totalSpooled = 0;
+    private long totalDrained = 0;
+    private long totalRejected = 0;
+    // Set when a replayed entry failed because the printer went away; cleared by the next fresh readiness check
+    private boolean stalled = false;
+    private volatile Thread replayThread;
+    private volatile PrintJob replayJob;
+    private volatile Dispatcher dispatcher;
+
+    private PrintSpool(Context context) {
+        directory = new File(context.getFilesDir(), SPOOL_DIR);
+        preferences = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        scheduler.execute(this::restore);
+        scheduler.scheduleWithFixedDelay(this::drainIfReady, CHECK_INTERVAL_MS, CHECK_INTERVAL_MS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    public static synchronized PrintSpool getInstance(Context context) {
+        if (instance == null) {
+            instance = new PrintSpool(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    public void setDispatcher(Dispatcher dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+
+    // True on the drain thread while a spooled call is being replayed
+    public boolean isReplaying() {
+        return Thread.currentThread() == replayThread;
+    }
+
+    // The job handed out when the replayed call was spooled, or null for commands and entries from an earlier run
+    public PrintJob getReplayJob() {
+        return isReplaying() ? replayJob : null;
+    }
+
+    public synchronized void configure(Mode mode, int maxEntries, long maxBytes) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.maxBytes = Math.max(1, maxBytes);
+        preferences.edit()
+                .putString(KEY_MODE, mode.name())
+                .putInt(KEY_MAX_ENTRIES, this.maxEntries)
+                .putLong(KEY_MAX_BYTES, this.maxBytes)
+                .apply();
+        if (mode == this.mode) {
+            return;
+        }
+
+        if (mode == Mode.DISK) {
+            for (Entry entry : entries) {
+                writeEntry(entry);
+            }
+            loadEntries();
+        } else if (this.mode == Mode.DISK) {
+            for (Entry entry : entries) {
+                entry.file().delete();
+            }
+        }
+        this.mode = mode;
+    }
+
+    // The saved mode comes back on the next launch, along with any entries a DISK spool left behind
+    private synchronized void restore() {
+        Mode saved;
+        try {
+            saved = Mode.valueOf(preferences.getString(KEY_MODE, Mode.OFF.name()));
+        } catch (IllegalArgumentException e) {
+            saved = Mode.OFF;
+        }
+        if (saved == Mode.OFF || mode != Mode.OFF) {
+            return;
+        }
+        maxEntries = Math.max(1, preferences.getInt(KEY_MAX_ENTRIES, DEFAULT_MAX_ENTRIES));
+        maxBytes = Math.max(1, preferences.getLong(KEY_MAX_BYTES, DEFAULT_MAX_BYTES));
+        mode = saved;
+        if (mode == Mode.DISK) {
+            loadEntries();
+        }
+    }
+
+    // Once anything is spooled, later calls queue behind it until the spool has drained
+    public synchronized boolean shouldSpool() {
+        if (mode == Mode.OFF) {
+            return false;
+        }
+        return !entries.isEmpty() || !isPrinterReady(PrinterOperations.getInstance().peekStatus());
+    }
+
+    public synchronized boolean add(MethodCall call, PrintJob job) {
+        byte[] payload = encode(call.arguments);
+        if (entries.size() >= maxEntries || spooledBytes + payload.length > maxBytes) {
+            totalRejected++;
+            return false;
+        }
+
+        Entry entry = new Entry(nextSequence++, call.method, payload, System.currentTimeMillis(), job);
+        if (mode == Mode.DISK && !writeEntry(entry)) {
+            totalRejected++;
+            return false;
+        }
+        entries.add(entry);
+        spooledBytes += payload.length;
+        totalSpooled++;
+        return true;
+    }
+
+    public synchronized boolean removeJob(int jobId) {
+        Iterator<Entry> iterator = entries.iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.job != null && entry.job.getId() == jobId && !entry.dispatched) {
+                iterator.remove();
+                discard(entry);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public List<PrintJob> clear() {
+        List<PrintJob> jobs = new ArrayList<>();
+        synchronized (this) {
+            while (!entries.isEmpty() && !entries.peekLast().dispatched) {
+                Entry entry = entries.pollLast();
+                discard(entry);
+                if (entry.job != null) {
+                    jobs.add(entry.job);
+                }
+            }
+        }
+        return jobs;
+    }
+
+    // Checks right away instead of waiting for the next poll
+    public void wake() {
+        scheduler.execute(this::drainIfReady);
+    }
+
+    public synchronized Map<String, Object> getStatus() {
+        Map<String, Object> status = new HashMap<>();
+        Entry oldest = entries.peekFirst();
+        status.put("mode", mode.name().toLowerCase());
+        status.put("depth", entries.size());
+        status.put("bytes", spooledBytes);
+        status.put("maxEntries", maxEntries);
+        status.put("maxBytes", maxBytes);
+        status.put("oldestAgeMs", oldest != null ? System.currentTimeMillis() - oldest.createdAt : 0L);
+        status.put("draining", isDraining());
+        status.put("totalSpooled", totalSpooled);
+        status.put("totalDrained", totalDrained);
+        status.put("totalRejected", totalRejected);
+        return status;
+    }
+
+    private static boolean isPrinterReady(PrinterStatusSnapshot status) {
+        if (!SerialConnectionManager.getInstance().isConnected()) {
+            return false;
+        }
+        return status == null || status.canPrint();
+    }
+
+    private void drainIfReady() {
+        synchronized (this) {
+            if (entries.isEmpty() || dispatcher == null) {
+                return;
+            }
+        }
+        // A fresh status rather than the cached one, so a drain never starts against a printer that has gone away
+        if (!isPrinterReadyNow()) {
+            return;
+        }
+        synchronized (this) {
+            stalled = false;
+        }
+        drain();
+    }
+
+    // Entries go out back to back, so the command queue can merge them and rendering overlaps writing. Each one
+    // leaves the spool from its own completion, in order; one lost to a disconnect stays queued for the next drain
+    private void drain() {
+        while (true) {
+            Dispatcher current = dispatcher;
+            Entry entry = null;
+            synchronized (this) {
+                if (stalled || current == null || !SerialConnectionManager.getInstance().isConnected()) {
+                    return;
+                }
+                for (Entry candidate : entries) {
+                    if (!candidate.dispatched) {
+                        entry = candidate;
+                        break;
+                    }
+                }
+                if (entry == null) {
+                    return;
+                }
+                entry.dispatched = true;
+            }
+
+            if (entry.job != null && entry.job.getState().isFinished()) {
+                settle(entry, null);
+                continue;
+            }
+            dispatch(entry, current);
+        }
+    }
+
+    private void dispatch(Entry entry, Dispatcher current) {
+        replayThread = Thread.currentThread();
+        replayJob = entry.job;
+        try {
+            // Completions arrive on the writer or job threads; settling waits for a status, so it hops back here
+            current.dispatch(new MethodCall(entry.method, decode(entry.payload)),
+                    error -> scheduler.execute(() -> {
+                        settle(entry, error);
+                        drain();
+                    }));
+        } catch (Exception e) {
+            settle(entry, String.valueOf(e.getMessage()));
+        } finally {
+            replayThread = null;
+            replayJob = null;
+        }
+    }
+
+    // Runs on the scheduler. A failure while the printer is unreachable puts the entry back for a retry; any other
+    // failure drops it, as the call would have failed without the spool too
+    private void settle(Entry entry, String error) {
+        if (error != null) {
+            if (!isPrinterReadyNow()) {
+                synchronized (this) {
+                    entry.dispatched = false;
+                    stalled = true;
+                }
+                if (entry.job != null && entry.job.getState() == PrintJob.State.FAILED) {
+                    PrintJobManager.getInstance().respool(entry.job);
+                }
+                return;
+            }
+            Log.w("FlutterSewooUsb", "Dropping spooled " + entry.method + ": " + error);
+        }
+
+        synchronized (this) {
+            entry.done = true;
+            while (!entries.isEmpty() && entries.peekFirst().done) {
+                discard(entries.pollFirst());
+                totalDrained++;
+            }
+        }
+    }
+
+    private synchronized boolean isDraining() {
+        for (Entry entry : entries) {
+            if (entry.dispatched && !entry.done) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isPrinterReadyNow() {
+        try {
+            return isPrinterReady(PrinterOperations.getInstance().getPrinterStatus());
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private void discard(Entry entry) {
+        spooledBytes -= entry.payload.length;
+        if (mode == Mode.DISK) {
+            entry.file().delete();
+        }
+    }
+
+    private static byte[] encode(Object arguments) {
+        ByteBuffer buffer = StandardMessageCodec.INSTANCE.encodeMessage(arguments);
+        if (buffer == null) {
+            return new byte[0];
+        }
+        buffer.rewind();
+        byte[] payload = new byte[buffer.remaining()];
+        buffer.get(payload);
+        return payload;
+    }
+
+    private static Object decode(byte[] payload) {
+        if (payload.length == 0) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(payload.length);
+        buffer.put(payload);
+        buffer.rewind();
+        return StandardMessageCodec.INSTANCE.decodeMessage(buffer);
+    }
+
+    // Written to a temp file and renamed, so a crash never leaves a half-written entry behind
+    private boolean writeEntry(Entry entry) {
+        if (!directory.exists() && !directory.mkdirs()) {
+            return false;
+        }
+        File temp = new File(directory, entry.sequence + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(temp))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeLong(entry.createdAt);
+            out.writeUTF(entry.method);
+            out.writeInt(entry.payload.length);
+            out.write(entry.payload);
+        } catch (IOException e) {
+            temp.delete();
+            return false;
+        }
+        return temp.renameTo(entry.file());
+    }
+
+    // Entries left by a previous run are replayed with fresh job IDs, since their waiters are gone
+    private void loadEntries() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        List<Entry> loaded = new ArrayList<>();
+        for (File file : files) {
+            String name = file.getName();
+            if (!name.endsWith(FILE_SUFFIX)) {
+                file.delete();
+                continue;
+            }
+            try {
+                long sequence = Long.parseLong(name.substring(0, name.length() - FILE_SUFFIX.length()));
+                if (containsSequence(sequence)) {
+                    continue;
+                }
+                loaded.add(readEntry(file, sequence));
+            } catch (IOException | NumberFormatException e) {
+                file.delete();
+            }
+        }
+
+        for (Entry entry : loaded) {
+            nextSequence = Math.max(nextSequence, entry.sequence + 1);
+        }
+        Collections.sort(loaded, (a, b) -> Long.compare(a.sequence, b.sequence));
+        List<Entry> current = new ArrayList<>(entries);
+        entries.clear();
+        entries.addAll(loaded);
+        entries.addAll(current);
+        for (Entry entry : loaded) {
+            spooledBytes += entry.payload.length;
+        }
+    }
+
+    private boolean containsSequence(long sequence) {
+        for (Entry entry : entries) {
+            if (entry.sequence == sequence) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Entry readEntry(File file, long sequence) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            if (in.readInt() != FILE_MAGIC) {
+                throw new IOException("Not a spool entry: " + file.getName());
+            }
+            long createdAt = in.readLong();
+            String method = in.readUTF();
+            byte[] payload = new byte[in.readInt()];
+            in.readFully(payload);
+            return new Entry(sequence, method, payload, createdAt, null);
+        }
+    }
+
+    private class Entry {
+        final long sequence;
+        final String method;
+        final byte[] payload;
+        final long createdAt;
+        final PrintJob job;
+        // Guarded by the spool: sent to the dispatcher, and finished with (printed, or dropped after an error)
+        boolean dispatched = false;
+        boolean done = false;
+
+        Entry(long sequence, String method, byte[] payload, long createdAt, PrintJob job) {
+            this.sequence = sequence;
+            this.method = method;
+            this.payload = payload;
+            this.createdAt = createdAt;
+            this.job = job;
+        }
+
+        File file() {
+            return new File(directory, sequence + FILE_SUFFIX);
+        }
+    }
+}
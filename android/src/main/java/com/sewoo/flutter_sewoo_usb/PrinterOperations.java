@@ -1,7 +1,6 @@
 package com.sewoo.flutter_sewoo_usb;
 
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
 import android.graphics.Paint;
 import android.graphics.Typeface;
@@ -12,15 +11,53 @@ import com.sewoo.jpos.command.ESCPOS;
 import com.sewoo.jpos.command.ESCPOSConst;
 import com.sewoo.jpos.printer.ESCPOSPrinter;
 import com.sewoo.jpos.printer.LKPrint;
+import com.sewoo.jpos.request.RequestQueue;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.locks.LockSupport;
 
-public class PrinterOperations {
+public class PrinterOperations implements PrinterSink {
     private static PrinterOperations instance;
-    private ESCPOSPrinter printer;
+    private volatile ESCPOSPrinter printer;
+
+    private static final int PRINTER_INFO_FIRMWARE = 65;
+    private static final int PRINTER_INFO_MODEL = 67;
+    private static final byte CANCEL_FEED_LINES = 3;
+    private static final long DEFAULT_STATUS_CACHE_MS = 500;
+    private static final String DEFAULT_ENCODING = "UTF-8";
+    private static final long DRAIN_POLL_NANOS = 1_000_000L;
+    private static final int MAX_CACHED_LOGOS = 4;
+
+    private final Object statusLock = new Object();
+    // Preloaded image files, trimmed for centre alignment; the entries are shared between jobs and only read
+    private final Map<String, RasterImage> logoCache = new LinkedHashMap<String, RasterImage>(8, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, RasterImage> eldest) {
+            return size() > MAX_CACHED_LOGOS;
+        }
+    };
+    // Held for each write to the port; status and info queries take it too so their reply is not read mid-band
+    private final Object portLock = new Object();
+    private FutureTask<PrinterStatusSnapshot> statusQuery;
+    private volatile PrinterStatusSnapshot lastStatus;
+    private volatile long statusCacheDurationMs = DEFAULT_STATUS_CACHE_MS;
+    private volatile PrinterProfile profile = PrinterProfile.defaults("");
+    private volatile String encoding = DEFAULT_ENCODING;
+    // The SDK charset requested last, null for the SDK default; the writer builds a printer for it on its next write
+    private volatile String requestedCharset = null;
+    // Guarded by portLock: the charset the current printer was built with
+    private String printerCharset = null;
+    // Guarded by portLock: when the bytes handed to the SDK so far will have cleared the serial link
+    private long linkFreeAt = 0;
+    // Guarded by portLock: when everything handed to the SDK before the last segment will have cleared the link
+    private long previousLinkFreeAt = 0;
 
     private static final Map<String, String> ENCODING_MAP = new HashMap<>();
 
@@ -43,14 +80,113 @@ public class PrinterOperations {
         return instance;
     }
 
+    // Only recorded here, so callers never wait on the port lock while the writer drains a band; the printer is
+    // swapped before the next write
     public void setEncoding(String encoding) {
         if (ENCODING_MAP.containsKey(encoding)) {
-            printer = new ESCPOSPrinter(encoding);
+            requestedCharset = encoding;
+            this.encoding = encoding;
         } else {
-            printer = new ESCPOSPrinter();
+            requestedCharset = null;
+            this.encoding = DEFAULT_ENCODING;
+        }
+    }
+
+    // Under the port lock, so a write in progress finishes on the printer it started with
+    private void applyEncodingLocked() {
+        String charset = requestedCharset;
+        if (!Objects.equals(charset, printerCharset)) {
+            printer = charset != null ? new ESCPOSPrinter(charset) : new ESCPOSPrinter();
+            printerCharset = charset;
+            applyProfile();
+        }
+    }
+
+    @Override
+    public String getEncoding() {
+        return encoding;
+    }
+
+    @Override
+    public boolean isConnected() {
+        return SerialConnectionManager.getInstance().isConnected();
+    }
+
+    @Override
+    public String getPortName() {
+        return SerialConnectionManager.getInstance().getCurrentPortName();
+    }
+
+    @Override
+    public int getDotWidth() {
+        return profile.getDotWidth();
+    }
+
+    @Override
+    public RasterMode getRasterMode() {
+        return profile.getRasterMode();
+    }
+
+    public PrinterProfile getProfile() {
+        return profile;
+    }
+
+    public void setProfile(PrinterProfile profile) {
+        this.profile = profile;
+        applyProfile();
+    }
+
+    private void applyProfile() {
+        printer.setCompress(profile.getRasterMode() == RasterMode.COMPRESSED_RASTER ? 1 : 0);
+    }
+
+    public PrinterProfile probeProfile(String deviceKey) {
+        String model;
+        String firmware;
+        synchronized (portLock) {
+            model = readModel();
+            firmware = readPrinterInfo(PRINTER_INFO_FIRMWARE);
+        }
+
+        if (model == null) {
+            return PrinterProfile.defaults(deviceKey);
+        }
+        return PrinterProfile.forModel(deviceKey, model, firmware);
+    }
+
+    // GS I 67, or the SDK's ESC v family check for printers that do not answer it; null when neither replies
+    public String readModel() {
+        synchronized (portLock) {
+            String model = readPrinterInfo(PRINTER_INFO_MODEL);
+            if (model == null) {
+                int modelCode = printer.getModel();
+                if (modelCode == 1) {
+                    model = "LK-B30";
+                } else if (modelCode == 2) {
+                    model = "LK-P";
+                }
+            }
+            return model;
         }
     }
 
+    private String readPrinterInfo(int infoType) {
+        byte[] response = new byte[64];
+        int length = printer.getPrinterInfo(new byte[]{0x1D, 'I', (byte) infoType}, 0, response);
+        if (length <= 0) {
+            return null;
+        }
+
+        // GS I replies are framed as '_' + text + NUL
+        int start = response[0] == '_' ? 1 : 0;
+        int end = start;
+        while (end < Math.min(length, response.length) && response[end] != 0) {
+            end++;
+        }
+        String value = new String(response, start, end - start).trim();
+        return value.isEmpty() ? null : value;
+    }
+
     public void printText(String text, int alignment, int fontType, int textSize) throws IOException, InterruptedException {
         if (!SerialConnectionManager.getInstance().isConnected()) {
             throw new IOException("Printer not connected");
@@ -84,20 +220,28 @@ public class PrinterOperations {
         printer.printQRCode(data, moduleSize, errorLevel);
     }
 
-    public void printImage(byte[] imageData) throws IOException, InterruptedException {
+    public void renderImage(byte[] imageData, SegmentStream out) throws IOException, InterruptedException {
         if (!SerialConnectionManager.getInstance().isConnected()) {
             throw new IOException("Printer not connected");
         }
 
-        Bitmap bitmap = BitmapFactory.decodeByteArray(imageData, 0, imageData.length);
+        Bitmap bitmap = BitmapPool.getInstance().decodeByteArray(imageData);
         if (bitmap != null) {
-            printer.printBitmap(bitmap, LKPrint.LK_ALIGNMENT_CENTER);
+            out.getJob().setTotalPages(1);
+            RasterImage raster;
+            try {
+                raster = BitmapRaster.rasterize(bitmap, profile.getDotWidth());
+            } finally {
+                BitmapPool.getInstance().release(bitmap);
+            }
+            RasterEncoder.render(raster, profile.getRasterMode(), LKPrint.LK_ALIGNMENT_CENTER, out);
+            out.add(PrintSegment.pageEnd());
         } else {
             throw new IOException("Failed to decode image data");
         }
     }
 
-    public void printImageFile(String imagePath) throws IOException, InterruptedException {
+    public void renderImageFile(String imagePath, SegmentStream out) throws IOException, InterruptedException {
         if (!SerialConnectionManager.getInstance().isConnected()) {
             throw new IOException("Printer not connected");
         }
@@ -107,15 +251,70 @@ public class PrinterOperations {
             throw new IOException("Image file not found: " + imagePath);
         }
 
-        Bitmap bitmap = BitmapFactory.decodeFile(imagePath);
+        RasterImage cached;
+        synchronized (logoCache) {
+            cached = logoCache.get(logoKey(imageFile));
+        }
+        if (cached != null) {
+            out.getJob().setTotalPages(1);
+            if (cached.getHeight() > 0) {
+                RasterEncoder.encode(cached, profile.getRasterMode(), LKPrint.LK_ALIGNMENT_CENTER, out);
+            }
+            out.add(PrintSegment.pageEnd());
+            return;
+        }
+
+        Bitmap bitmap = BitmapPool.getInstance().decodeFile(imagePath);
         if (bitmap != null) {
-            printer.printBitmap(bitmap, LKPrint.LK_ALIGNMENT_CENTER);
+            out.getJob().setTotalPages(1);
+            RasterImage raster;
+            try {
+                raster = BitmapRaster.rasterize(bitmap, profile.getDotWidth());
+            } finally {
+                BitmapPool.getInstance().release(bitmap);
+            }
+            RasterEncoder.render(raster, profile.getRasterMode(), LKPrint.LK_ALIGNMENT_CENTER, out);
+            out.add(PrintSegment.pageEnd());
         } else {
             throw new IOException("Failed to decode image file");
         }
     }
 
-    public void printPDF(String pdfPath, int pageNumber) throws IOException, InterruptedException {
+    // Decodes and rasterizes an image file now, so printing it later with printImageFile skips both steps
+    public boolean preloadImageFile(String imagePath) {
+        File imageFile = new File(imagePath);
+        if (!imageFile.exists()) {
+            return false;
+        }
+        Bitmap bitmap = BitmapPool.getInstance().decodeFile(imagePath);
+        if (bitmap == null) {
+            return false;
+        }
+
+        RasterImage raster;
+        try {
+            raster = BitmapRaster.rasterize(bitmap, profile.getDotWidth());
+        } finally {
+            BitmapPool.getInstance().release(bitmap);
+        }
+        RasterImage trimmed = raster.trim(LKPrint.LK_ALIGNMENT_CENTER);
+        if (trimmed != raster) {
+            raster.release();
+        }
+        RasterImage cached = trimmed.detach();
+        trimmed.release();
+        synchronized (logoCache) {
+            logoCache.put(logoKey(imageFile), cached);
+        }
+        return true;
+    }
+
+    // A changed file or a different head width misses the cache
+    private String logoKey(File imageFile) {
+        return imageFile.getAbsolutePath() + "@" + imageFile.lastModified() + "@" + profile.getDotWidth();
+    }
+
+    public void renderPDF(String pdfPath, int pageNumber, SegmentStream out) throws IOException, InterruptedException {
         if (!SerialConnectionManager.getInstance().isConnected()) {
             throw new IOException("Printer not connected");
         }
@@ -128,32 +327,146 @@ public class PrinterOperations {
         ParcelFileDescriptor fileDescriptor = ParcelFileDescriptor.open(pdfFile, ParcelFileDescriptor.MODE_READ_ONLY);
         PdfRenderer pdfRenderer = new PdfRenderer(fileDescriptor);
 
-        if (pageNumber >= pdfRenderer.getPageCount()) {
+        try {
+            int pageCount = pdfRenderer.getPageCount();
+            if (pageNumber >= pageCount) {
+                throw new IOException("Page number out of range");
+            }
+
+            int firstPage = pageNumber < 0 ? 0 : pageNumber;
+            int lastPage = pageNumber < 0 ? pageCount - 1 : pageNumber;
+            out.getJob().setTotalPages(lastPage - firstPage + 1);
+
+            for (int i = firstPage; i <= lastPage; i++) {
+                out.getJob().checkCancelled();
+                PdfRenderer.Page page = pdfRenderer.openPage(i);
+
+                Bitmap bitmap = BitmapPool.getInstance().lease(page.getWidth(), page.getHeight());
+                RasterImage raster;
+                try {
+                    bitmap.eraseColor(0xFFFFFFFF);
+                    page.render(bitmap, null, null, PdfRenderer.Page.RENDER_MODE_FOR_PRINT);
+                    page.close();
+                    raster = BitmapRaster.rasterize(bitmap, profile.getDotWidth());
+                } finally {
+                    BitmapPool.getInstance().release(bitmap);
+                }
+
+                RasterEncoder.render(raster, profile.getRasterMode(), LKPrint.LK_ALIGNMENT_CENTER, out);
+                out.add(PrintSegment.pageEnd());
+            }
+        } finally {
             pdfRenderer.close();
             fileDescriptor.close();
-            throw new IOException("Page number out of range");
         }
+    }
 
-        PdfRenderer.Page page = pdfRenderer.openPage(pageNumber);
+    @Override
+    public void writeSegment(PrintSegment segment) throws Exception {
+        synchronized (portLock) {
+            writeSegmentLocked(segment);
+        }
+    }
 
-        Bitmap bitmap = Bitmap.createBitmap(page.getWidth(), page.getHeight(), Bitmap.Config.ARGB_8888);
-        bitmap.eraseColor(0xFFFFFFFF);
+    private void writeSegmentLocked(PrintSegment segment) throws Exception {
+        applyEncodingLocked();
+        previousLinkFreeAt = linkFreeAt;
+        int baudRate = SerialConnectionManager.getInstance().getCurrentBaudRate();
+        if (baudRate > 0 && segment.size() > 0) {
+            // 8N1 framing puts 10 bits on the wire per byte
+            linkFreeAt = Math.max(linkFreeAt, System.nanoTime()) + segment.size() * 10L * 1_000_000_000L / baudRate;
+        }
 
-        page.render(bitmap, null, null, PdfRenderer.Page.RENDER_MODE_FOR_PRINT);
+        switch (segment.kind) {
+            case BYTES:
+                if (!SerialConnectionManager.getInstance().isConnected()) {
+                    throw new IOException("Printer not connected");
+                }
+                printer.sendByte(segment.bytes);
+                break;
+            case BITMAP:
+                try {
+                    printBand(segment.band, segment.alignment);
+                } finally {
+                    segment.band.release();
+                }
+                break;
+            case COMMAND:
+                executeCommand(segment.command);
+                break;
+            case PAGE_END:
+                break;
+        }
+    }
 
-        printer.printBitmap(bitmap, LKPrint.LK_ALIGNMENT_CENTER);
+    // sendByte and printBitmap only append to the SDK's RequestQueue and its handler thread does the writing, so a
+    // writer that did not wait would queue a whole job within milliseconds. Between segments it waits for all but the
+    // last one, keeping a band queued ahead of the wire; here it waits for the queue to empty and the link to clear.
+    @Override
+    public void awaitDrained() throws IOException {
+        synchronized (portLock) {
+            awaitDrainedLocked();
+        }
+    }
 
-        page.close();
-        pdfRenderer.close();
-        fileDescriptor.close();
+    // Paced on the link estimate alone, as the SDK queue cannot say how much of it is the last segment; the port lock
+    // is not held while waiting
+    @Override
+    public void awaitAllButLastDrained() {
+        long freeAt;
+        synchronized (portLock) {
+            freeAt = previousLinkFreeAt;
+        }
+        long wait;
+        while ((wait = freeAt - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(this, wait);
+        }
     }
 
-    public void printAndroidFont(String text, Typeface typeface, float textSize, int alignment)
-            throws IOException, InterruptedException {
-        if (!SerialConnectionManager.getInstance().isConnected()) {
-            throw new IOException("Printer not connected");
+    private void awaitDrainedLocked() throws IOException {
+        RequestQueue queue = RequestQueue.getInstance();
+        while (!queue.isEmpty()) {
+            if (!SerialConnectionManager.getInstance().isConnected()) {
+                throw new IOException("Printer disconnected");
+            }
+            LockSupport.parkNanos(this, DRAIN_POLL_NANOS);
         }
+        long wait;
+        while ((wait = linkFreeAt - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(this, wait);
+        }
+    }
+
+    // Drops whatever the SDK has not written yet so the reset goes out straight after the band in flight
+    @Override
+    public void resetAfterCancel() {
+        synchronized (portLock) {
+            RequestQueue.getInstance().clearQueue();
+            linkFreeAt = 0;
+            previousLinkFreeAt = 0;
+            printer.sendByte(new byte[]{0x1B, '@', 0x1B, 'd', CANCEL_FEED_LINES});
+        }
+    }
 
+    // Rasterizing happens on a render worker so the writer only has to send the bitmap
+    @Override
+    public void prepareCommand(PrintCommand command) throws IOException {
+        if (command.type == PrintCommand.Type.ANDROID_FONT) {
+            if (!SerialConnectionManager.getInstance().isConnected()) {
+                throw new IOException("Printer not connected");
+            }
+            Bitmap bitmap = renderAndroidFont(command.text,
+                    Typeface.create(command.fontFamily != null ? command.fontFamily : "sans-serif", Typeface.NORMAL),
+                    command.fontSize);
+            try {
+                command.rendered = BitmapRaster.rasterize(bitmap, profile.getDotWidth());
+            } finally {
+                BitmapPool.getInstance().release(bitmap);
+            }
+        }
+    }
+
+    Bitmap renderAndroidFont(String text, Typeface typeface, float textSize) {
         Paint paint = new Paint();
         paint.setTypeface(typeface);
         paint.setTextSize(textSize);
@@ -162,13 +475,72 @@ public class PrinterOperations {
         int width = (int) paint.measureText(text) + 10;
         int height = (int) (paint.descent() - paint.ascent()) + 10;
 
-        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        Bitmap bitmap = BitmapPool.getInstance().lease(width, height);
         bitmap.eraseColor(0xFFFFFFFF);
 
         Canvas canvas = new Canvas(bitmap);
         canvas.drawText(text, 5, -paint.ascent() + 5, paint);
+        return bitmap;
+    }
+
+    private void executeCommand(PrintCommand command) throws Exception {
+        switch (command.type) {
+            case TEXT:
+                printText(command.text, command.arg(0), command.arg(1), command.arg(2));
+                break;
+            case STRING:
+                printString(command.text);
+                break;
+            case BARCODE:
+                printBarcode(command.text, command.arg(0), command.arg(1), command.arg(2),
+                        command.arg(3), command.arg(4));
+                break;
+            case QR_CODE:
+                printQRCode(command.text, command.arg(0), command.arg(1));
+                break;
+            case ANDROID_FONT:
+                try {
+                    printBand(command.rendered, command.arg(0));
+                } finally {
+                    command.rendered.release();
+                    command.rendered = null;
+                }
+                break;
+            case FEED:
+                lineFeed(command.arg(0));
+                break;
+            case FEED_LINES:
+                feedLines(command.arg(0));
+                break;
+            case CUT:
+                cutPaper();
+                break;
+            case FEED_AND_CUT:
+                feedAndCut(command.arg(0));
+                break;
+            case CASH_DRAWER:
+                openCashDrawer();
+                break;
+            case RESET:
+                reset();
+                break;
+            case RAW:
+                sendRawData(command.data);
+                break;
+        }
+    }
 
-        printer.printBitmap(bitmap, alignment);
+    private void printBand(RasterImage band, int alignment) throws IOException {
+        if (!SerialConnectionManager.getInstance().isConnected()) {
+            throw new IOException("Printer not connected");
+        }
+
+        Bitmap bitmap = BitmapRaster.toBitmap(band);
+        try {
+            printer.printBitmap(bitmap, alignment);
+        } finally {
+            BitmapPool.getInstance().release(bitmap);
+        }
     }
 
     public void lineFeed(int lines) throws IOException, InterruptedException {
@@ -179,6 +551,26 @@ public class PrinterOperations {
         printer.lineFeed(lines);
     }
 
+    public void feedLines(int lines) throws IOException {
+        if (!SerialConnectionManager.getInstance().isConnected()) {
+            throw new IOException("Printer not connected");
+        }
+
+        while (lines > 0) {
+            int feed = Math.min(lines, 255);
+            printer.sendByte(new byte[]{0x1B, 'd', (byte) feed});
+            lines -= feed;
+        }
+    }
+
+    public void feedAndCut(int dots) throws IOException {
+        if (!SerialConnectionManager.getInstance().isConnected()) {
+            throw new IOException("Printer not connected");
+        }
+
+        printer.sendByte(new byte[]{0x1D, 'V', 66, (byte) dots});
+    }
+
     public void cutPaper() throws IOException, InterruptedException {
         if (!SerialConnectionManager.getInstance().isConnected()) {
             throw new IOException("Printer not connected");
@@ -195,28 +587,70 @@ public class PrinterOperations {
         printer.openCashDrawer();
     }
 
-    public Map<String, Object> checkPrinterStatus() throws IOException, InterruptedException {
+    public void setStatusCacheDuration(long millis) {
+        statusCacheDurationMs = Math.max(0, millis);
+    }
+
+    public PrinterStatusSnapshot getPrinterStatus() throws IOException, InterruptedException {
         if (!SerialConnectionManager.getInstance().isConnected()) {
             throw new IOException("Printer not connected");
         }
 
-        Map<String, Object> status = new HashMap<>();
+        PrinterStatusSnapshot cached = lastStatus;
+        if (cached != null && cached.ageMillis() <= statusCacheDurationMs) {
+            return cached;
+        }
 
-        try {
-            int statusCode = printer.printerStatus();
+        FutureTask<PrinterStatusSnapshot> query;
+        boolean owner = false;
+        synchronized (statusLock) {
+            query = statusQuery;
+            if (query == null) {
+                query = new FutureTask<>(this::queryPrinterStatus);
+                statusQuery = query;
+                owner = true;
+            }
+        }
 
-            status.put("statusCode", statusCode);
-            status.put("isNormal", statusCode == LKPrint.LK_STS_NORMAL);
-            status.put("isPaperEmpty", (statusCode & LKPrint.LK_STS_PAPER_EMPTY) != 0);
-            status.put("isPaperNearEnd", (statusCode & LKPrint.LK_STS_PAPER_NEAREND) != 0);
-            status.put("isCoverOpen", (statusCode & LKPrint.LK_STS_COVER_OPEN) != 0);
-            status.put("isError", (statusCode & LKPrint.LK_STS_PRINTER_ERROR) != 0);
+        if (owner) {
+            try {
+                query.run();
+            } finally {
+                synchronized (statusLock) {
+                    statusQuery = null;
+                }
+            }
+        }
 
+        try {
+            return query.get();
+        } catch (ExecutionException e) {
+            return PrinterStatusSnapshot.failed(e.getCause().getMessage());
+        }
+    }
+
+    // DLE EOT goes through the same SDK queue as print data, so wait for it to drain between bands first
+    private PrinterStatusSnapshot queryPrinterStatus() {
+        PrinterStatusSnapshot snapshot;
+        try {
+            synchronized (portLock) {
+                awaitDrainedLocked();
+                snapshot = PrinterStatusSnapshot.of(printer.printerStatus());
+            }
         } catch (Exception e) {
-            status.put("error", e.getMessage());
+            return PrinterStatusSnapshot.failed(e.getMessage());
         }
+        lastStatus = snapshot;
+        return snapshot;
+    }
+
+    // Last known status without querying the printer; null when unknown
+    public PrinterStatusSnapshot peekStatus() {
+        return lastStatus;
+    }
 
-        return status;
+    void invalidateStatus() {
+        lastStatus = null;
     }
 
     public void reset() throws IOException, InterruptedException {
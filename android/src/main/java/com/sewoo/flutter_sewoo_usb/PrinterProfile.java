@@ -0,0 +1,172 @@
+package com.sewoo.flutter_sewoo_usb;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public final class PrinterProfile {
+    private static final List<String> DEFAULT_CODE_PAGES =
+            Arrays.asList("UTF-8", "EUC-KR", "BIG5", "GB2312", "Shift_JIS");
+
+    // Model prefix, head dots, receive buffer bytes, raster mode, barcode width, QR module size
+    private static final Object[][] KNOWN_MODELS = {
+            {"LK-P2", 384, 2048, RasterMode.COMPRESSED_RASTER, 2, 4},
+            {"LK-P3", 576, 4096, RasterMode.COMPRESSED_RASTER, 2, 5},
+            {"LK-P4", 832, 4096, RasterMode.COMPRESSED_RASTER, 3, 6},
+            // Bare family name from the ESC v check; the narrowest head is the width every LK-P can print
+            {"LK-P", 384, 2048, RasterMode.COMPRESSED_RASTER, 2, 4},
+            {"LK-B30", 576, 4096, RasterMode.RASTER, 3, 6},
+            {"LK-TE2", 576, 8192, RasterMode.RASTER, 3, 6},
+            {"LK-T2", 576, 8192, RasterMode.RASTER, 3, 6},
+            {"LK-T1", 576, 4096, RasterMode.COLUMN, 3, 6},
+    };
+
+    private final String deviceKey;
+    private final String model;
+    private final String firmware;
+    private final int dotWidth;
+    private final int bufferSize;
+    private final RasterMode rasterMode;
+    private final int barcodeWidth;
+    private final int qrModuleSize;
+    private final List<String> codePages;
+    private final long probedAt;
+
+    private PrinterProfile(String deviceKey, String model, String firmware, int dotWidth, int bufferSize,
+                           RasterMode rasterMode, int barcodeWidth, int qrModuleSize, List<String> codePages,
+                           long probedAt) {
+        this.deviceKey = deviceKey;
+        this.model = model;
+        this.firmware = firmware;
+        this.dotWidth = dotWidth;
+        this.bufferSize = bufferSize;
+        this.rasterMode = rasterMode;
+        this.barcodeWidth = barcodeWidth;
+        this.qrModuleSize = qrModuleSize;
+        this.codePages = Collections.unmodifiableList(codePages);
+        this.probedAt = probedAt;
+    }
+
+    public static PrinterProfile defaults(String deviceKey) {
+        return new PrinterProfile(deviceKey, "", "", 576, 4096, RasterMode.RASTER, 2, 4,
+                DEFAULT_CODE_PAGES, 0);
+    }
+
+    public static PrinterProfile forModel(String deviceKey, String model, String firmware) {
+        String name = model != null ? model.trim() : "";
+        for (Object[] known : KNOWN_MODELS) {
+            if (name.toUpperCase().startsWith((String) known[0])) {
+                return new PrinterProfile(deviceKey, name, firmware != null ? firmware : "",
+                        (Integer) known[1], (Integer) known[2], (RasterMode) known[3],
+                        (Integer) known[4], (Integer) known[5], DEFAULT_CODE_PAGES, System.currentTimeMillis());
+            }
+        }
+
+        // Unknown models keep the generic settings but are not marked probed, so they are never cached
+        PrinterProfile fallback = defaults(deviceKey);
+        return new PrinterProfile(deviceKey, name, firmware != null ? firmware : "", fallback.dotWidth,
+                fallback.bufferSize, fallback.rasterMode, fallback.barcodeWidth, fallback.qrModuleSize,
+                DEFAULT_CODE_PAGES, 0);
+    }
+
+    public String getDeviceKey() {
+        return deviceKey;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    public String getFirmware() {
+        return firmware;
+    }
+
+    public int getDotWidth() {
+        return dotWidth;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public RasterMode getRasterMode() {
+        return rasterMode;
+    }
+
+    public int getBarcodeWidth() {
+        return barcodeWidth;
+    }
+
+    public int getQrModuleSize() {
+        return qrModuleSize;
+    }
+
+    public List<String> getCodePages() {
+        return codePages;
+    }
+
+    // True only for a profile matched to a known model
+    public boolean isProbed() {
+        return probedAt > 0;
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new HashMap<>();
+        map.put("deviceKey", deviceKey);
+        map.put("model", model);
+        map.put("firmware", firmware);
+        map.put("dotWidth", dotWidth);
+        map.put("bufferSize", bufferSize);
+        map.put("rasterMode", rasterMode.name());
+        map.put("barcodeWidth", barcodeWidth);
+        map.put("qrModuleSize", qrModuleSize);
+        map.put("codePages", new ArrayList<>(codePages));
+        map.put("probedAt", probedAt);
+        return map;
+    }
+
+    String toJson() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("deviceKey", deviceKey);
+        json.put("model", model);
+        json.put("firmware", firmware);
+        json.put("dotWidth", dotWidth);
+        json.put("bufferSize", bufferSize);
+        json.put("rasterMode", rasterMode.name());
+        json.put("barcodeWidth", barcodeWidth);
+        json.put("qrModuleSize", qrModuleSize);
+        json.put("codePages", new JSONArray(codePages));
+        json.put("probedAt", probedAt);
+        return json.toString();
+    }
+
+    static PrinterProfile fromJson(String value) throws JSONException {
+        JSONObject json = new JSONObject(value);
+        List<String> codePages = new ArrayList<>();
+        JSONArray pages = json.optJSONArray("codePages");
+        if (pages != null) {
+            for (int i = 0; i < pages.length(); i++) {
+                codePages.add(pages.optString(i));
+            }
+        }
+
+        RasterMode rasterMode;
+        try {
+            rasterMode = RasterMode.valueOf(json.optString("rasterMode", RasterMode.RASTER.name()));
+        } catch (IllegalArgumentException e) {
+            rasterMode = RasterMode.RASTER;
+        }
+
+        return new PrinterProfile(json.getString("deviceKey"), json.optString("model", ""),
+                json.optString("firmware", ""), json.optInt("dotWidth", 576), json.optInt("bufferSize", 4096),
+                rasterMode, json.optInt("barcodeWidth", 2), json.optInt("qrModuleSize", 4),
+                codePages.isEmpty() ? DEFAULT_CODE_PAGES : codePages, json.optLong("probedAt", 0));
+    }
+}
@@ -0,0 +1,87 @@
+package com.sewoo.flutter_sewoo_usb;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import org.json.JSONException;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class PrinterProfileCache {
+    private static final String PREFS_NAME = "flutter_sewoo_usb_printer.profiles";
+
+    private static PrinterProfileCache instance;
+    private final SharedPreferences preferences;
+    private final Map<String, PrinterProfile> profiles = new HashMap<>();
+
+    private PrinterProfileCache(Context context) {
+        preferences = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    public static synchronized PrinterProfileCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new PrinterProfileCache(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    public synchronized PrinterProfile get(String deviceKey) {
+        PrinterProfile profile = profiles.get(deviceKey);
+        if (profile == null) {
+            String stored = preferences.getString(deviceKey, null);
+            if (stored != null) {
+                try {
+                    profile = PrinterProfile.fromJson(stored);
+                    profiles.put(deviceKey, profile);
+                } catch (JSONException e) {
+                    preferences.edit().remove(deviceKey).apply();
+                }
+            }
+        }
+        return profile;
+    }
+
+    public synchronized void put(PrinterProfile profile) {
+        profiles.put(profile.getDeviceKey(), profile);
+        try {
+            preferences.edit().putString(profile.getDeviceKey(), profile.toJson()).apply();
+        } catch (JSONException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public synchronized void clear() {
+        profiles.clear();
+        preferences.edit().clear().apply();
+    }
+
+    public synchronized void remove(String deviceKey) {
+        profiles.remove(deviceKey);
+        preferences.edit().remove(deviceKey).apply();
+    }
+
+    // Keyed on the USB device when it can be identified. Its serial number and firmware release are part of the key,
+    // so a hit is used without asking the printer. Keyed on the port, a different printer may have been plugged in
+    // since the profile was stored, so it is only trusted when the printer still reports the same model
+    public PrinterProfile getOrProbe(String portName, String usbIdentity, PrinterOperations operations) {
+        String deviceKey = usbIdentity != null ? usbIdentity : portName;
+        PrinterProfile profile = get(deviceKey);
+        if (profile != null) {
+            if (usbIdentity != null) {
+                return profile;
+            }
+            String model = operations.readModel();
+            if (model == null || model.trim().equalsIgnoreCase(profile.getModel())) {
+                return profile;
+            }
+            remove(deviceKey);
+        }
+
+        profile = operations.probeProfile(deviceKey);
+        if (profile.isProbed()) {
+            put(profile);
+        }
+        return profile;
+    }
+}
@@ -0,0 +1,32 @@
+package com.sewoo.flutter_sewoo_usb;
+
+import java.io.IOException;
+
+// What the command queue, render workers and port writer need from the printer. PrinterOperations is the one the
+// plugin uses; tool/loadtest puts a paced stand-in behind the same queue and pipeline on a desktop JVM
+public interface PrinterSink {
+    boolean isConnected();
+
+    String getPortName();
+
+    String getEncoding();
+
+    int getDotWidth();
+
+    RasterMode getRasterMode();
+
+    // Runs on a render worker, so slow preparation such as rasterizing text stays off the writer
+    void prepareCommand(PrintCommand command) throws IOException;
+
+    // Called only from the port writer thread; the segment is consumed even when the write fails
+    void writeSegment(PrintSegment segment) throws Exception;
+
+    // Returns once everything written so far has left the link
+    void awaitDrained() throws IOException;
+
+    // Returns once everything but the segment written last has left the link, so that one stays queued
+    void awaitAllButLastDrained();
+
+    // Drops what has not been written yet and resets the printer after a cancelled job
+    void resetAfterCancel();
+}
@@ -0,0 +1,93 @@
+package com.sewoo.flutter_sewoo_usb;
+
+import com.sewoo.jpos.printer.LKPrint;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+public final class PrinterStatusSnapshot {
+    private static final int ERROR_MASK = LKPrint.LK_STS_PRINTEROFF | LKPrint.LK_STS_TIMEOUT;
+
+    private final int statusCode;
+    private final String error;
+    private final long timestamp;
+    private Map<String, Object> map;
+
+    private PrinterStatusSnapshot(int statusCode, String error, long timestamp) {
+        this.statusCode = statusCode;
+        this.error = error;
+        this.timestamp = timestamp;
+    }
+
+    public static PrinterStatusSnapshot of(int statusCode) {
+        return new PrinterStatusSnapshot(statusCode, null, System.currentTimeMillis());
+    }
+
+    public static PrinterStatusSnapshot failed(String error) {
+        return new PrinterStatusSnapshot(0, error, System.currentTimeMillis());
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public boolean hasError() {
+        return error != null;
+    }
+
+    public long ageMillis() {
+        return System.currentTimeMillis() - timestamp;
+    }
+
+    // printerStatus() reports -1 when the printer did not answer
+    private boolean hasFlag(int flag) {
+        return statusCode > 0 && (statusCode & flag) != 0;
+    }
+
+    public boolean isNormal() {
+        return error == null && statusCode == LKPrint.LK_STS_NORMAL;
+    }
+
+    public boolean canPrint() {
+        return error == null && !isError() && !isPaperEmpty() && !isCoverOpen();
+    }
+
+    public boolean isPaperEmpty() {
+        return hasFlag(LKPrint.LK_STS_PAPER_EMPTY);
+    }
+
+    public boolean isPaperNearEnd() {
+        return hasFlag(LKPrint.STS_PAPERNEAREMPTY);
+    }
+
+    public boolean isCoverOpen() {
+        return hasFlag(LKPrint.LK_STS_COVER_OPEN);
+    }
+
+    public boolean isError() {
+        return statusCode < 0 || hasFlag(ERROR_MASK);
+    }
+
+    public synchronized Map<String, Object> toMap() {
+        if (map == null) {
+            Map<String, Object> status = new HashMap<>();
+            if (error != null) {
+                status.put("error", error);
+            } else {
+                status.put("statusCode", statusCode);
+                status.put("isNormal", isNormal());
+                status.put("isPaperEmpty", isPaperEmpty());
+                status.put("isPaperNearEnd", isPaperNearEnd());
+                status.put("isCoverOpen", isCoverOpen());
+                status.put("isError", isError());
+            }
+            map = Collections.unmodifiableMap(status);
+        }
+        return map;
+    }
+}
@@ -0,0 +1,75 @@
+package com.sewoo.flutter_sewoo_usb;
+
+// Turns packed images into print segments for the printer's raster mode; blank runs become paper feeds
+public final class RasterEncoder {
+    private static final byte BAND_HEIGHT = 24;
+
+    private RasterEncoder() {
+    }
+
+    // Trims for the alignment, encodes, and releases the image
+    public static void render(RasterImage source, RasterMode mode, int alignment, SegmentStream out)
+            throws InterruptedException {
+        RasterImage raster = source.trim(alignment);
+        if (raster != source) {
+            source.release();
+        }
+        try {
+            if (raster.getHeight() > 0) {
+                encode(raster, mode, alignment, out);
+            }
+        } finally {
+            raster.release();
+        }
+    }
+
+    // Only reads the image, so shared images such as preloaded logos can be encoded by several jobs at once
+    public static void encode(RasterImage raster, RasterMode mode, int alignment, SegmentStream out)
+            throws InterruptedException {
+        if (mode == RasterMode.COLUMN) {
+            out.add(PrintSegment.bytes(new byte[]{0x1B, 'a', (byte) alignment, 0x1B, '3', BAND_HEIGHT}));
+        } else if (mode == RasterMode.RASTER) {
+            out.add(PrintSegment.bytes(new byte[]{0x1B, 'a', (byte) alignment}));
+        }
+
+        int row = 0;
+        while (row < raster.getHeight()) {
+            if (mode == RasterMode.COLUMN) {
+                if (raster.blankRowsFrom(row, BAND_HEIGHT) == BAND_HEIGHT) {
+                    feed(BAND_HEIGHT, out);
+                } else {
+                    out.add(PrintSegment.bytes(raster.columnStripe(row)));
+                }
+                row += BAND_HEIGHT;
+                continue;
+            }
+
+            int blank = raster.blankRowsFrom(row, Integer.MAX_VALUE);
+            if (blank > 0) {
+                feed(blank, out);
+                row += blank;
+                continue;
+            }
+
+            int rows = raster.inkRowsFrom(row, BAND_HEIGHT);
+            if (mode == RasterMode.COMPRESSED_RASTER) {
+                out.add(PrintSegment.bitmap(raster.band(row, rows), alignment));
+            } else {
+                out.add(PrintSegment.bytes(raster.rasterBand(row, rows)));
+            }
+            row += rows;
+        }
+
+        if (mode == RasterMode.COLUMN) {
+            out.add(PrintSegment.bytes(new byte[]{0x1B, '2'}));
+        }
+    }
+
+    private static void feed(int dots, SegmentStream out) throws InterruptedException {
+        while (dots > 0) {
+            int feed = Math.min(dots, 255);
+            out.add(PrintSegment.bytes(new byte[]{0x1B, 'J', (byte) feed}));
+            dots -= feed;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.sewoo.flutter_sewoo_usb;
+
+import com.sewoo.jpos.printer.LKPrint;
+
+import java.util.Arrays;
+
+public class RasterImage {
+    private static final int LUMINANCE_THRESHOLD = 128;
+
+    private final int widthBytes;
+    private final int height;
+    private byte[] data;
+
+    RasterImage(int widthBytes, int height, byte[] data) {
+        this.widthBytes = widthBytes;
+        this.height = height;
+        this.data = data;
+    }
+
+    // Supplies one row of ARGB pixels at a time; BitmapRaster reads Android bitmaps this way
+    public interface RowSource {
+        void readRow(int y, int[] argb);
+    }
+
+    public static RasterImage fromRows(int width, int height, RowSource source) {
+        int widthBytes = (width + 7) / 8;
+        byte[] data = ByteArrayPool.getInstance().lease(widthBytes * height);
+        Arrays.fill(data, 0, widthBytes * height, (byte) 0);
+        int[] row = IntArrayPool.getInstance().lease(width);
+
+        for (int y = 0; y < height; y++) {
+            source.readRow(y, row);
+            int offset = y * widthBytes;
+            for (int x = 0; x < width; x++) {
+                if (isDark(row[x])) {
+                    data[offset + (x >> 3)] |= (byte) (0x80 >> (x & 7));
+                }
+            }
+        }
+
+        IntArrayPool.getInstance().release(row);
+        return new RasterImage(widthBytes, height, data);
+    }
+
+    private static boolean isDark(int argb) {
+        int alpha = (argb >>> 24) & 0xFF;
+        if (alpha < LUMINANCE_THRESHOLD) {
+            return false;
+        }
+        int r = (argb >> 16) & 0xFF;
+        int g = (argb >> 8) & 0xFF;
+        int b = argb & 0xFF;
+        return (r * 299 + g * 587 + b * 114) / 1000 < LUMINANCE_THRESHOLD;
+    }
+
+    public boolean isBlankRow(int y) {
+        int offset = y * widthBytes;
+        for (int i = 0; i < widthBytes; i++) {
+            if (data[offset + i] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int blankRowsFrom(int startRow, int maxRows) {
+        int rows = 0;
+        while (rows < maxRows && startRow + rows < height && isBlankRow(startRow + rows)) {
+            rows++;
+        }
+        return rows;
+    }
+
+    public int inkRowsFrom(int startRow, int maxRows) {
+        int rows = 0;
+        while (rows < maxRows && startRow + rows < height && !isBlankRow(startRow + rows)) {
+            rows++;
+        }
+        return rows;
+    }
+
+    // Drops blank rows at the bottom and blank byte columns on the side(s) the alignment allows
+    public RasterImage trim(int alignment) {
+        int lastRow = height - 1;
+        while (lastRow >= 0 && isBlankRow(lastRow)) {
+            lastRow--;
+        }
+        int trimmedHeight = lastRow + 1;
+        if (trimmedHeight == 0) {
+            return new RasterImage(0, 0, new byte[0]);
+        }
+
+        int leading = widthBytes;
+        int trailing = widthBytes;
+        for (int y = 0; y < trimmedHeight; y++) {
+            int offset = y * widthBytes;
+            int first = 0;
+            while (first < leading && data[offset + first] == 0) {
+                first++;
+            }
+            leading = first;
+            int last = 0;
+            while (last < trailing && data[offset + widthBytes - 1 - last] == 0) {
+                last++;
+            }
+            trailing = last;
+        }
+
+        int left;
+        int right;
+        if (alignment == LKPrint.LK_ALIGNMENT_CENTER) {
+            left = Math.min(leading, trailing);
+            right = left;
+        } else if (alignment == LKPrint.LK_ALIGNMENT_RIGHT) {
+            left = leading;
+            right = 0;
+        } else {
+            left = 0;
+            right = trailing;
+        }
+
+        int trimmedWidth = widthBytes - left - right;
+        if (trimmedWidth == widthBytes && trimmedHeight == height) {
+            return this;
+        }
+
+        byte[] trimmed = ByteArrayPool.getInstance().lease(trimmedWidth * trimmedHeight);
+        for (int y = 0; y < trimmedHeight; y++) {
+            System.arraycopy(data, y * widthBytes + left, trimmed, y * trimmedWidth, trimmedWidth);
+        }
+        return new RasterImage(trimmedWidth, trimmedHeight, trimmed);
+    }
+
+    // A copy backed by its own array, for images kept across prints; it is never released to the pool
+    public RasterImage detach() {
+        return new RasterImage(widthBytes, height, Arrays.copyOf(data, widthBytes * height));
+    }
+
+    // Returns the packed rows to the pool; the image must not be used afterwards
+    public void release() {
+        if (data != null && data.length > 0) {
+            ByteArrayPool.getInstance().release(data);
+        }
+        data = null;
+    }
+
+    public int getWidthBytes() {
+        return widthBytes;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    // GS v 0 command for rows [startRow, startRow + rows)
+    public byte[] rasterBand(int startRow, int rows) {
+        byte[] command = new byte[8 + widthBytes * rows];
+        command[0] = 0x1D;
+        command[1] = 'v';
+        command[2] = '0';
+        command[3] = 0;
+        command[4] = (byte) (widthBytes & 0xFF);
+        command[5] = (byte) ((widthBytes >> 8) & 0xFF);
+        command[6] = (byte) (rows & 0xFF);
+        command[7] = (byte) ((rows >> 8) & 0xFF);
+        System.arraycopy(data, startRow * widthBytes, command, 8, widthBytes * rows);
+        return command;
+    }
+
+    // ESC * 33 (24-dot double density) column image for rows [startRow, startRow + 24), followed by LF
+    public byte[] columnStripe(int startRow) {
+        int widthDots = widthBytes * 8;
+        byte[] command = new byte[5 + widthDots * 3 + 1];
+        command[0] = 0x1B;
+        command[1] = '*';
+        command[2] = 33;
+        command[3] = (byte) (widthDots & 0xFF);
+        command[4] = (byte) ((widthDots >> 8) & 0xFF);
+
+        int offset = 5;
+        for (int x = 0; x < widthDots; x++) {
+            int byteIndex = x >> 3;
+            int mask = 0x80 >> (x & 7);
+            for (int slice = 0; slice < 3; slice++) {
+                int column = 0;
+                for (int bit = 0; bit < 8; bit++) {
+                    int y = startRow + slice * 8 + bit;
+                    if (y < height && (data[y * widthBytes + byteIndex] & mask) != 0) {
+                        column |= 0x80 >> bit;
+                    }
+                }
+                command[offset++] = (byte) column;
+            }
+        }
+        command[offset] = 0x0A;
+        return command;
+    }
+
+    // Pooled copy of rows [startRow, startRow + rows), owned by the segment that carries it to the writer
+    public RasterImage band(int startRow, int rows) {
+        byte[] copy = ByteArrayPool.getInstance().lease(widthBytes * rows);
+        System.arraycopy(data, startRow * widthBytes, copy, 0, widthBytes * rows);
+        return new RasterImage(widthBytes, rows, copy);
+    }
+
+    public boolean isDot(int x, int y) {
+        return (data[y * widthBytes + (x >> 3)] & (0x80 >> (x & 7))) != 0;
+    }
+}
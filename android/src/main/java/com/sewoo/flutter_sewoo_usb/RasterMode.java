@@ -0,0 +1,6 @@
+package com.sewoo.flutter_sewoo_usb;
+
+// How a printer takes images: GS v 0 bands, bitmaps the SDK compresses, or ESC * 24-dot stripes for older heads
+public enum RasterMode {
+    RASTER, COMPRESSED_RASTER, COLUMN
+}
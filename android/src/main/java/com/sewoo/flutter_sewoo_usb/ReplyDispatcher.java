@@ -0,0 +1,155 @@
+package com.sewoo.flutter_sewoo_usb;
+
+import android.os.Handler;
+
+import io.flutter.plugin.common.MethodChannel.Result;
+
+import java.util.ArrayList;
+
+// Batches method results and events so a burst of completions costs one main-looper message
+public class ReplyDispatcher {
+    private static final int KIND_SUCCESS = 0;
+    private static final int KIND_ERROR = 1;
+    private static final int KIND_NOT_IMPLEMENTED = 2;
+    private static final int KIND_EVENT = 3;
+    private static final int MAX_POOLED = 64;
+
+    public interface EventTarget {
+        void deliver(Object event);
+    }
+
+    private static final class Reply {
+        int kind;
+        Result result;
+        EventTarget target;
+        Object value;
+        String code;
+        String message;
+        Object details;
+
+        void clear() {
+            result = null;
+            target = null;
+            value = null;
+            code = null;
+            message = null;
+            details = null;
+        }
+    }
+
+    private final Handler mainHandler;
+    private final Object lock = new Object();
+    private final Reply[] pool = new Reply[MAX_POOLED];
+    private int pooled = 0;
+    private ArrayList<Reply> pending = new ArrayList<>();
+    private ArrayList<Reply> draining = new ArrayList<>();
+    private boolean scheduled = false;
+    private final Runnable drainTask = this::drain;
+
+    public ReplyDispatcher(Handler mainHandler) {
+        this.mainHandler = mainHandler;
+    }
+
+    public void success(Result result, Object value) {
+        Reply reply = obtain(KIND_SUCCESS);
+        reply.result = result;
+        reply.value = value;
+        enqueue(reply);
+    }
+
+    public void error(Result result, String code, String message, Object details) {
+        Reply reply = obtain(KIND_ERROR);
+        reply.result = result;
+        reply.code = code;
+        reply.message = message;
+        reply.details = details;
+        enqueue(reply);
+    }
+
+    public void notImplemented(Result result) {
+        Reply reply = obtain(KIND_NOT_IMPLEMENTED);
+        reply.result = result;
+        enqueue(reply);
+    }
+
+    public void event(EventTarget target, Object event) {
+        Reply reply = obtain(KIND_EVENT);
+        reply.target = target;
+        reply.value = event;
+        enqueue(reply);
+    }
+
+    private Reply obtain(int kind) {
+        Reply reply = null;
+        synchronized (lock) {
+            if (pooled > 0) {
+                reply = pool[--pooled];
+                pool[pooled] = null;
+            }
+        }
+        if (reply == null) {
+            reply = new Reply();
+        }
+        reply.kind = kind;
+        return reply;
+    }
+
+    private void enqueue(Reply reply) {
+        boolean schedule;
+        synchronized (lock) {
+            pending.add(reply);
+            schedule = !scheduled;
+            scheduled = true;
+        }
+        if (schedule) {
+            mainHandler.post(drainTask);
+        }
+    }
+
+    private void drain() {
+        ArrayList<Reply> batch;
+        synchronized (lock) {
+            batch = pending;
+            pending = draining;
+            draining = batch;
+            scheduled = false;
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            Reply reply = batch.get(i);
+            try {
+                deliver(reply);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+
+        synchronized (lock) {
+            for (int i = 0; i < batch.size(); i++) {
+                Reply reply = batch.get(i);
+                reply.clear();
+                if (pooled < MAX_POOLED) {
+                    pool[pooled++] = reply;
+                }
+            }
+        }
+        batch.clear();
+    }
+
+    private void deliver(Reply reply) {
+        switch (reply.kind) {
+            case KIND_SUCCESS:
+                reply.result.success(reply.value);
+                break;
+            case KIND_ERROR:
+                reply.result.error(reply.code, reply.message, reply.details);
+                break;
+            case KIND_NOT_IMPLEMENTED:
+                reply.result.notImplemented();
+                break;
+            case KIND_EVENT:
+                reply.target.deliver(reply.value);
+                break;
+        }
+    }
+}
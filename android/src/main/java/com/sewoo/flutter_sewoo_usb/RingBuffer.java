@@ -0,0 +1,84 @@
+package com.sewoo.flutter_sewoo_usb;
+
+import java.util.concurrent.locks.LockSupport;
+
+// Bounded lock-free queue; producers back off while full, the single consumer parks while empty
+public abstract class RingBuffer<E> {
+    private static final long FULL_BACKOFF_NANOS = 200_000L;
+
+    protected final int capacity;
+    protected final int mask;
+    private volatile Thread waiter;
+    private volatile boolean closed = false;
+
+    protected RingBuffer(int requestedCapacity) {
+        int size = 1;
+        while (size < requestedCapacity) {
+            size <<= 1;
+        }
+        capacity = size;
+        mask = size - 1;
+    }
+
+    public abstract boolean offer(E element);
+
+    public abstract E poll();
+
+    public abstract int size();
+
+    public int capacity() {
+        return capacity;
+    }
+
+    // Returns false without queueing once the buffer is closed, so a producer never waits on a consumer that left
+    public boolean put(E element) throws InterruptedException {
+        while (!closed) {
+            if (offer(element)) {
+                signal();
+                return true;
+            }
+            LockSupport.parkNanos(this, FULL_BACKOFF_NANOS);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+        return false;
+    }
+
+    public E take() throws InterruptedException {
+        E element;
+        while ((element = poll()) == null) {
+            await();
+        }
+        return element;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    // Wakes the consumer for good; elements already queued can still be polled
+    public void close() {
+        closed = true;
+        signal();
+    }
+
+    public void signal() {
+        Thread thread = waiter;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    // Publishing the waiter before re-checking size and closed means a producer cannot slip past unseen
+    public void await() throws InterruptedException {
+        waiter = Thread.currentThread();
+        if (size() == 0 && !closed) {
+            LockSupport.park(this);
+        }
+        waiter = null;
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.sewoo.flutter_sewoo_usb;
+
+// Ordered output of one job or command batch, handed from its renderer to the port writer
+public class SegmentStream {
+    private static final int JOB_STREAM_CAPACITY = 64;
+
+    private final PrintJob job;
+    private final SpscRingBuffer<PrintSegment> segments;
+    private volatile boolean aborted = false;
+    private volatile Exception error;
+
+    private SegmentStream(PrintJob job, int capacity) {
+        this.job = job;
+        this.segments = new SpscRingBuffer<>(capacity);
+    }
+
+    public static SegmentStream forJob(PrintJob job) {
+        return new SegmentStream(job, JOB_STREAM_CAPACITY);
+    }
+
+    public static SegmentStream forCommands(int count) {
+        return new SegmentStream(null, Math.max(1, count));
+    }
+
+    public PrintJob getJob() {
+        return job;
+    }
+
+    public Exception getError() {
+        return error;
+    }
+
+    public void add(PrintSegment segment) throws InterruptedException {
+        if (aborted || (job != null && job.isCancelRequested())) {
+            segment.discard();
+            throw new PrintJob.JobCancelledException(job != null ? job.getId() : 0);
+        }
+        if (job != null) {
+            job.addTotalBytes(segment.size());
+        }
+        if (!segments.put(segment)) {
+            segment.discard();
+            throw new PrintJob.JobCancelledException(job != null ? job.getId() : 0);
+        }
+    }
+
+    public void close() {
+        segments.close();
+    }
+
+    public void fail(Exception error) {
+        this.error = error;
+        close();
+    }
+
+    // Also closes the ring, so a renderer waiting on a full one gives up instead of waiting on the writer
+    void abort() {
+        aborted = true;
+        segments.close();
+    }
+
+    // Returns null once the renderer has closed the stream and everything has been taken
+    PrintSegment next() throws InterruptedException {
+        while (true) {
+            boolean done = segments.isClosed();
+            PrintSegment segment = segments.poll();
+            if (segment != null) {
+                return segment;
+            }
+            if (done) {
+                return null;
+            }
+            segments.await();
+        }
+    }
+}
@@ -9,6 +9,9 @@ import com.sewoo.port.serial.jni.LKSerialPort;
 import com.sewoo.port.serial.jni.LKSerialPortFinder;
 import com.sewoo.request.android.RequestHandler;
 
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -137,4 +140,36 @@ public class SerialConnectionManager {
     public LKSerialPort getSerialPort() {
         return serialPort;
     }
+
+    // Vendor, product, serial number and release (firmware) of the USB printer behind a tty, read from sysfs. Null
+    // when the port is not a USB device, sysfs is not readable, or there is no serial number to tell printers apart
+    public static String getUsbIdentity(String portName) {
+        try {
+            File dir = new File("/sys/class/tty/" + new File(portName).getName() + "/device").getCanonicalFile();
+            // The tty hangs off a USB interface; the descriptor files sit on the device above it
+            while (dir != null && !new File(dir, "idVendor").isFile()) {
+                dir = dir.getParentFile();
+            }
+            if (dir == null) {
+                return null;
+            }
+            String serial = readSysfs(dir, "serial");
+            if (serial == null || serial.isEmpty()) {
+                return null;
+            }
+            return "usb:" + readSysfs(dir, "idVendor") + ":" + readSysfs(dir, "idProduct") + ":" + serial
+                    + ":" + readSysfs(dir, "bcdDevice");
+        } catch (IOException | SecurityException e) {
+            return null;
+        }
+    }
+
+    private static String readSysfs(File dir, String name) {
+        try (BufferedReader reader = new BufferedReader(new FileReader(new File(dir, name)))) {
+            String line = reader.readLine();
+            return line != null ? line.trim() : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,44 @@
+package com.sewoo.flutter_sewoo_usb;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+public class SpscRingBuffer<E> extends RingBuffer<E> {
+    private final AtomicReferenceArray<E> buffer;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    public SpscRingBuffer(int capacity) {
+        super(capacity);
+        buffer = new AtomicReferenceArray<>(this.capacity);
+    }
+
+    @Override
+    public boolean offer(E element) {
+        long currentTail = tail.get();
+        if (currentTail - head.get() >= capacity) {
+            return false;
+        }
+        buffer.lazySet((int) currentTail & mask, element);
+        tail.set(currentTail + 1);
+        return true;
+    }
+
+    @Override
+    public E poll() {
+        long currentHead = head.get();
+        if (currentHead == tail.get()) {
+            return null;
+        }
+        int index = (int) currentHead & mask;
+        E element = buffer.get(index);
+        buffer.lazySet(index, null);
+        head.lazySet(currentHead + 1);
+        return element;
+    }
+
+    @Override
+    public int size() {
+        return (int) (tail.get() - head.get());
+    }
+}
@@ -0,0 +1,258 @@
+package com.sewoo.flutter_sewoo_usb;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.graphics.Bitmap;
+import android.graphics.Typeface;
+import android.os.SystemClock;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+// Remembers the last connection settings and, when asked, reconnects and loads everything the first receipt needs
+public class WarmStart {
+    private static final String PREFS_NAME = "flutter_sewoo_usb_printer.settings";
+    private static final String KEY_PORT_NAME = "portName";
+    private static final String KEY_BAUD_RATE = "baudRate";
+    private static final String KEY_ENCODING = "encoding";
+    // Newline-separated, least recently used first
+    private static final String KEY_FONT_FAMILIES = "recentFontFamilies";
+    private static final String DEFAULT_FONT_FAMILY = "sans-serif";
+    private static final int MAX_FONT_FAMILIES = 8;
+    private static final long CONNECT_TIMEOUT_MS = 10000;
+    private static final String SAMPLE_TEXT = "Warm-up 0123456789 ABCabc";
+    private static final float SAMPLE_FONT_SIZE = 24.0f;
+
+    public interface Connector {
+        // A non-null encoding is applied once the port is open, before anything is written to it
+        void connect(String portName, int baudRate, String encoding, SerialConnectionManager.ConnectionCallback callback);
+    }
+
+    public interface Listener {
+        void onReady(Map<String, Object> report);
+    }
+
+    private static WarmStart instance;
+    private final SharedPreferences preferences;
+    private final long createdAt = SystemClock.elapsedRealtime();
+    private final Set<String> fontFamilies = new LinkedHashSet<>();
+    private final List<Listener> waiting = new ArrayList<>();
+
+    private WarmStart(Context context) {
+        preferences = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        String saved = preferences.getString(KEY_FONT_FAMILIES, "");
+        if (!saved.isEmpty()) {
+            fontFamilies.addAll(Arrays.asList(saved.split("\n")));
+        }
+    }
+
+    public static synchronized WarmStart getInstance(Context context) {
+        if (instance == null) {
+            instance = new WarmStart(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    public synchronized void rememberConnection(String portName, int baudRate) {
+        if (!portName.equals(preferences.getString(KEY_PORT_NAME, null))
+                || baudRate != preferences.getInt(KEY_BAUD_RATE, 0)) {
+            preferences.edit().putString(KEY_PORT_NAME, portName).putInt(KEY_BAUD_RATE, baudRate).apply();
+        }
+    }
+
+    public synchronized void rememberEncoding(String encoding) {
+        if (!encoding.equals(preferences.getString(KEY_ENCODING, null))) {
+            preferences.edit().putString(KEY_ENCODING, encoding).apply();
+        }
+    }
+
+    // Keeps the most recently used families; the one unused the longest makes way for a new one
+    public synchronized void rememberFontFamily(String fontFamily) {
+        String newest = null;
+        for (String family : fontFamilies) {
+            newest = family;
+        }
+        if (fontFamily.equals(newest)) {
+            return;
+        }
+
+        fontFamilies.remove(fontFamily);
+        fontFamilies.add(fontFamily);
+        if (fontFamilies.size() > MAX_FONT_FAMILIES) {
+            fontFamilies.remove(fontFamilies.iterator().next());
+        }
+        StringBuilder saved = new StringBuilder();
+        for (String family : fontFamilies) {
+            if (saved.length() > 0) {
+                saved.append('\n');
+            }
+            saved.append(family);
+        }
+        preferences.edit().putString(KEY_FONT_FAMILIES, saved.toString()).apply();
+    }
+
+    public synchronized Map<String, Object> getSettings() {
+        Map<String, Object> settings = new HashMap<>();
+        settings.put("portName", preferences.getString(KEY_PORT_NAME, null));
+        settings.put("baudRate", preferences.contains(KEY_BAUD_RATE) ? preferences.getInt(KEY_BAUD_RATE, 0) : null);
+        settings.put("encoding", preferences.getString(KEY_ENCODING, null));
+        settings.put("fontFamilies", new ArrayList<>(fontFamilies));
+        return settings;
+    }
+
+    public synchronized void clear() {
+        fontFamilies.clear();
+        preferences.edit().clear().apply();
+    }
+
+    // Callers that arrive while a warm-up is running share its report
+    public void warmUp(boolean reconnect, List<String> logoPaths, Connector connector, Listener listener) {
+        synchronized (this) {
+            waiting.add(listener);
+            if (waiting.size() > 1) {
+                return;
+            }
+        }
+
+        new Thread(() -> {
+            Map<String, Object> report = run(reconnect, logoPaths, connector);
+            List<Listener> listeners;
+            synchronized (this) {
+                listeners = new ArrayList<>(waiting);
+                waiting.clear();
+            }
+            for (Listener waiter : listeners) {
+                waiter.onReady(report);
+            }
+        }, "sewoo-warmup").start();
+    }
+
+    private Map<String, Object> run(boolean reconnect, List<String> logoPaths, Connector connector) {
+        long started = SystemClock.elapsedRealtime();
+        String portName;
+        int baudRate;
+        String encoding;
+        List<String> families;
+        synchronized (this) {
+            portName = preferences.getString(KEY_PORT_NAME, null);
+            baudRate = preferences.getInt(KEY_BAUD_RATE, 0);
+            encoding = preferences.getString(KEY_ENCODING, null);
+            families = new ArrayList<>(fontFamilies);
+        }
+
+        // The connect thread sleeps while the port settles, so the preloads below run in its shadow
+        SerialConnectionManager connectionManager = SerialConnectionManager.getInstance();
+        CountDownLatch connected = new CountDownLatch(1);
+        long[] connectMs = new long[1];
+        String[] error = new String[1];
+        boolean connecting = false;
+        if (reconnect && portName != null && !connectionManager.isConnected()) {
+            if (connectionManager.getAvailablePorts().contains(portName)) {
+                connecting = true;
+                connector.connect(portName, baudRate, encoding, new SerialConnectionManager.ConnectionCallback() {
+                    @Override
+                    public void onSuccess() {
+                        connectMs[0] = SystemClock.elapsedRealtime() - started;
+                        connected.countDown();
+                    }
+
+                    @Override
+                    public void onFailure(String message) {
+                        error[0] = message;
+                        connected.countDown();
+                    }
+                });
+            } else {
+                error[0] = "Port " + portName + " not found";
+            }
+        }
+
+        Map<String, Object> steps = new HashMap<>();
+        PrinterOperations operations = PrinterOperations.getInstance();
+
+        long stepStart = SystemClock.elapsedRealtime();
+        PrintPipeline.getInstance().prestartWorkers();
+        CommandQueue.getInstance();
+        PrintJobManager.getInstance();
+        stepStart = step(steps, "pipeline", stepStart);
+
+        // A reconnect applies the encoding itself before the port is used; otherwise the swap waits for the port lock
+        if (!connecting && encoding != null && !encoding.equals(operations.getEncoding())) {
+            operations.setEncoding(encoding);
+        }
+        SAMPLE_TEXT.getBytes(Charset.forName(encoding != null ? encoding : operations.getEncoding()));
+        stepStart = step(steps, "encoders", stepStart);
+
+        // Only used to size the sample renders; logos wait for the probed profile below
+        int dotWidth = operations.getProfile().getDotWidth();
+        if (!families.contains(DEFAULT_FONT_FAMILY)) {
+            families.add(0, DEFAULT_FONT_FAMILY);
+        }
+        for (String family : families) {
+            Bitmap bitmap = operations.renderAndroidFont(SAMPLE_TEXT, Typeface.create(family, Typeface.NORMAL),
+                    SAMPLE_FONT_SIZE);
+            BitmapRaster.rasterize(bitmap, dotWidth).release();
+            BitmapPool.getInstance().release(bitmap);
+        }
+        stepStart = step(steps, "fonts", stepStart);
+
+        try {
+            Class.forName("android.graphics.pdf.PdfRenderer", true, WarmStart.class.getClassLoader());
+            Class.forName("android.graphics.pdf.PdfRenderer$Page", true, WarmStart.class.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            e.printStackTrace();
+        }
+        step(steps, "pdf", stepStart);
+
+        if (connecting) {
+            try {
+                if (!connected.await(CONNECT_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                    error[0] = "Timed out reconnecting to " + portName;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                error[0] = "Interrupted while reconnecting";
+            }
+            if (error[0] == null) {
+                steps.put("connect", connectMs[0]);
+            }
+        }
+
+        // Rasterized for the connected printer's head width and kept, so printImageFile skips decoding them
+        stepStart = SystemClock.elapsedRealtime();
+        int logos = 0;
+        if (logoPaths != null) {
+            for (String path : logoPaths) {
+                if (operations.preloadImageFile(path)) {
+                    logos++;
+                }
+            }
+        }
+        step(steps, "logos", stepStart);
+
+        long finished = SystemClock.elapsedRealtime();
+        Map<String, Object> report = new HashMap<>();
+        report.put("ready", connectionManager.isConnected());
+        report.put("portName", connectionManager.isConnected() ? connectionManager.getCurrentPortName() : portName);
+        report.put("timeToReadyMs", finished - started);
+        report.put("sinceStartMs", finished - createdAt);
+        report.put("steps", steps);
+        report.put("logos", logos);
+        report.put("error", error[0]);
+        return report;
+    }
+
+    private static long step(Map<String, Object> steps, String name, long stepStart) {
+        long now = SystemClock.elapsedRealtime();
+        steps.put(name, now - stepStart);
+        return now;
+    }
+}
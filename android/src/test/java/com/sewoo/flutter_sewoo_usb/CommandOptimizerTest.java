@@ -0,0 +1,128 @@
+package com.sewoo.flutter_sewoo_usb;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class CommandOptimizerTest {
+    private static final String CHARSET = "UTF-8";
+
+    private final CommandOptimizer optimizer = new CommandOptimizer();
+
+    @Test
+    public void adjacentFeedsBecomeOneFeed() {
+        List<PrintCommand> out = optimizer.optimize(Arrays.asList(
+                PrintCommand.feed(1, null), PrintCommand.feed(2, null)), CHARSET);
+
+        assertEquals(1, out.size());
+        assertEquals(PrintCommand.Type.FEED, out.get(0).getType());
+        assertEquals(3, out.get(0).arg(0));
+    }
+
+    @Test
+    public void longFeedsUseTheLineFeedCommand() {
+        List<PrintCommand> out = optimizer.optimize(Arrays.asList(
+                PrintCommand.feed(2, null), PrintCommand.feed(4, null)), CHARSET);
+
+        assertEquals(1, out.size());
+        assertEquals(PrintCommand.Type.FEED_LINES, out.get(0).getType());
+        assertEquals(6, out.get(0).arg(0));
+    }
+
+    @Test
+    public void feedFollowedByCutBecomesFeedAndCut() {
+        List<PrintCommand> out = optimizer.optimize(Arrays.asList(
+                PrintCommand.feed(5, null), PrintCommand.cut(null)), CHARSET);
+
+        assertEquals(1, out.size());
+        assertEquals(PrintCommand.Type.FEED_AND_CUT, out.get(0).getType());
+        // 5 lines of 30 dots, less the distance GS V 66 already feeds past the cutter
+        assertEquals(5 * 30 - 96, out.get(0).arg(0));
+    }
+
+    @Test
+    public void shortFeedBeforeCutIsAbsorbedByTheCutter() {
+        List<PrintCommand> out = optimizer.optimize(Arrays.asList(
+                PrintCommand.feed(1, null), PrintCommand.cut(null)), CHARSET);
+
+        assertEquals(1, out.size());
+        assertEquals(PrintCommand.Type.FEED_AND_CUT, out.get(0).getType());
+        assertEquals(0, out.get(0).arg(0));
+    }
+
+    @Test
+    public void repeatedCutsAreDropped() {
+        List<PrintCommand> out = optimizer.optimize(Arrays.asList(
+                PrintCommand.feed(4, null), PrintCommand.cut(null), PrintCommand.cut(null)), CHARSET);
+
+        assertEquals(1, out.size());
+        assertEquals(PrintCommand.Type.FEED_AND_CUT, out.get(0).getType());
+    }
+
+    @Test
+    public void duplicateResetsAreDropped() {
+        List<PrintCommand> out = optimizer.optimize(Arrays.asList(
+                PrintCommand.reset(null), PrintCommand.reset(null), PrintCommand.reset(null)), CHARSET);
+
+        assertEquals(1, out.size());
+        assertEquals(PrintCommand.Type.RESET, out.get(0).getType());
+    }
+
+    @Test
+    public void resetAfterPrintedTextIsKept() {
+        List<PrintCommand> out = optimizer.optimize(Arrays.asList(
+                PrintCommand.reset(null),
+                PrintCommand.text("Total", 0, 0, 0, null),
+                PrintCommand.reset(null),
+                PrintCommand.reset(null)), CHARSET);
+
+        assertEquals(3, out.size());
+        assertEquals(PrintCommand.Type.RESET, out.get(0).getType());
+        assertEquals(PrintCommand.Type.TEXT, out.get(1).getType());
+        assertEquals(PrintCommand.Type.RESET, out.get(2).getType());
+    }
+
+    @Test
+    public void consecutiveStringsAreJoined() {
+        List<PrintCommand> out = optimizer.optimize(Arrays.asList(
+                PrintCommand.string("Sub", null), PrintCommand.string("total", null)), CHARSET);
+
+        assertEquals(1, out.size());
+        assertEquals("Subtotal", out.get(0).text);
+    }
+
+    @Test
+    public void mergedCommandCompletesEveryCaller() {
+        List<Exception> results = new ArrayList<>();
+        PrintCommand.Callback callback = results::add;
+        List<PrintCommand> out = optimizer.optimize(Arrays.asList(
+                PrintCommand.feed(2, callback), PrintCommand.feed(1, callback), PrintCommand.cut(callback)), CHARSET);
+
+        assertEquals(1, out.size());
+        out.get(0).complete(null);
+        assertEquals(3, results.size());
+        for (Exception result : results) {
+            assertNull(result);
+        }
+    }
+
+    @Test
+    public void statsCountSavedCommandsAndBytes() {
+        optimizer.optimize(Arrays.asList(
+                PrintCommand.feed(1, null), PrintCommand.feed(1, null), PrintCommand.cut(null)), CHARSET);
+
+        Map<String, Object> stats = optimizer.getStats();
+        assertEquals(1L, stats.get("batches"));
+        assertEquals(3, stats.get("lastCommandsIn"));
+        assertEquals(1, stats.get("lastCommandsOut"));
+        assertEquals(2L, stats.get("totalCommandsSaved"));
+        // Two 1-byte feeds and a 2-byte cut become one 4-byte feed-and-cut
+        assertEquals(0L, stats.get("lastBytesSaved"));
+    }
+}
@@ -0,0 +1,75 @@
+package com.sewoo.flutter_sewoo_usb;
+
+import org.json.JSONException;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PrinterProfileTest {
+    private static final String PORT = "/dev/ttyUSB0";
+
+    @Test
+    public void knownModelSurvivesJsonRoundTrip() throws JSONException {
+        PrinterProfile profile = PrinterProfile.forModel(PORT, " LK-P31 ", "V1.02");
+
+        PrinterProfile restored = PrinterProfile.fromJson(profile.toJson());
+
+        assertEquals(profile.toMap(), restored.toMap());
+        assertEquals("LK-P31", restored.getModel());
+        assertEquals("V1.02", restored.getFirmware());
+        assertEquals(576, restored.getDotWidth());
+        assertEquals(RasterMode.COMPRESSED_RASTER, restored.getRasterMode());
+        assertTrue(restored.isProbed());
+    }
+
+    @Test
+    public void everyKnownModelSurvivesJsonRoundTrip() throws JSONException {
+        for (String model : Arrays.asList("LK-P20", "LK-P41", "LK-P", "LK-B30", "LK-TE212", "LK-T21", "LK-T100")) {
+            PrinterProfile profile = PrinterProfile.forModel(PORT, model, "");
+            assertEquals(model, profile.toMap(), PrinterProfile.fromJson(profile.toJson()).toMap());
+        }
+    }
+
+    @Test
+    public void bareLkpFamilyMatchesANarrowHeadProfile() {
+        PrinterProfile profile = PrinterProfile.forModel(PORT, "LK-P", null);
+
+        assertTrue(profile.isProbed());
+        assertEquals(384, profile.getDotWidth());
+        assertEquals(RasterMode.COMPRESSED_RASTER, profile.getRasterMode());
+    }
+
+    @Test
+    public void unknownModelIsNotMarkedProbed() throws JSONException {
+        PrinterProfile profile = PrinterProfile.forModel(PORT, "XP-58", "1.0");
+
+        assertFalse(profile.isProbed());
+        assertEquals("XP-58", profile.getModel());
+        assertFalse(PrinterProfile.fromJson(profile.toJson()).isProbed());
+    }
+
+    @Test
+    public void missingFieldsFallBackToDefaults() throws JSONException {
+        PrinterProfile restored = PrinterProfile.fromJson("{\"deviceKey\":\"" + PORT + "\"}");
+
+        assertEquals(PrinterProfile.defaults(PORT).toMap(), restored.toMap());
+    }
+
+    @Test
+    public void unknownRasterModeFallsBackToRaster() throws JSONException {
+        PrinterProfile restored = PrinterProfile.fromJson(
+                "{\"deviceKey\":\"" + PORT + "\",\"model\":\"LK-P31\",\"rasterMode\":\"DITHERED\"}");
+
+        assertEquals(RasterMode.RASTER, restored.getRasterMode());
+        assertEquals("LK-P31", restored.getModel());
+    }
+
+    @Test(expected = JSONException.class)
+    public void profileWithoutDeviceKeyIsRejected() throws JSONException {
+        PrinterProfile.fromJson("{\"model\":\"LK-P31\"}");
+    }
+}
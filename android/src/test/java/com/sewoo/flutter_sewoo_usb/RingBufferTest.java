@@ -0,0 +1,129 @@
+package com.sewoo.flutter_sewoo_usb;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class RingBufferTest {
+    private static final int PRODUCERS = 4;
+    private static final int PER_PRODUCER = 20000;
+
+    @Test
+    public void capacityRoundsUpToPowerOfTwo() {
+        assertEquals(8, new SpscRingBuffer<Integer>(5).capacity());
+        assertEquals(8, new MpscRingBuffer<Integer>(8).capacity());
+        assertEquals(1, new SpscRingBuffer<Integer>(1).capacity());
+    }
+
+    @Test
+    public void spscKeepsOrderAcrossWraparound() {
+        assertWrapsAround(new SpscRingBuffer<Integer>(4));
+    }
+
+    @Test
+    public void mpscKeepsOrderAcrossWraparound() {
+        assertWrapsAround(new MpscRingBuffer<Integer>(4));
+    }
+
+    @Test
+    public void spscPutAndTakeAcrossThreads() throws Exception {
+        SpscRingBuffer<Integer> ring = new SpscRingBuffer<>(8);
+        Thread producer = new Thread(() -> {
+            try {
+                for (int i = 0; i < PER_PRODUCER; i++) {
+                    ring.put(i);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        producer.start();
+
+        for (int i = 0; i < PER_PRODUCER; i++) {
+            assertEquals(Integer.valueOf(i), ring.take());
+        }
+        producer.join();
+        assertEquals(0, ring.size());
+    }
+
+    // Each producer's elements must come out in its own order, whatever the interleaving
+    @Test
+    public void mpscKeepsEachProducersOrder() throws Exception {
+        MpscRingBuffer<int[]> ring = new MpscRingBuffer<>(16);
+        List<Thread> producers = new ArrayList<>();
+        for (int p = 0; p < PRODUCERS; p++) {
+            int producerId = p;
+            Thread producer = new Thread(() -> {
+                try {
+                    for (int i = 0; i < PER_PRODUCER; i++) {
+                        ring.put(new int[]{producerId, i});
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            producers.add(producer);
+            producer.start();
+        }
+
+        int[] next = new int[PRODUCERS];
+        for (int received = 0; received < PRODUCERS * PER_PRODUCER; received++) {
+            int[] element = ring.take();
+            assertEquals(next[element[0]], element[1]);
+            next[element[0]]++;
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        assertNull(ring.poll());
+    }
+
+    @Test
+    public void closeWakesAnIdleConsumer() throws Exception {
+        SpscRingBuffer<Integer> ring = new SpscRingBuffer<>(4);
+        Thread consumer = new Thread(() -> {
+            try {
+                ring.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        consumer.start();
+        ring.close();
+        consumer.join(5000);
+
+        assertFalse(consumer.isAlive());
+        assertTrue(ring.isClosed());
+    }
+
+    private static void assertWrapsAround(RingBuffer<Integer> ring) {
+        int next = 0;
+        int expected = 0;
+        // Partial fills push head and tail past the end of the array many times over
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 3; i++) {
+                assertTrue(ring.offer(next++));
+            }
+            for (int i = 0; i < 3; i++) {
+                assertEquals(Integer.valueOf(expected++), ring.poll());
+            }
+        }
+
+        for (int i = 0; i < ring.capacity(); i++) {
+            assertTrue(ring.offer(next++));
+        }
+        assertFalse(ring.offer(next));
+        assertEquals(ring.capacity(), ring.size());
+        for (int i = 0; i < ring.capacity(); i++) {
+            assertEquals(Integer.valueOf(expected++), ring.poll());
+        }
+        assertNull(ring.poll());
+        assertEquals(0, ring.size());
+    }
+}
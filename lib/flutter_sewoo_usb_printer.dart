@@ -1,361 +1,860 @@
-import 'dart:async';
-import 'dart:typed_data';
-import 'package:flutter/services.dart';
-
-class SewooUsbPrinter {
-  static const MethodChannel _channel =
-      MethodChannel('flutter_sewoo_usb_printer');
-  static const EventChannel _statusChannel =
-      EventChannel('flutter_sewoo_usb_printer/status');
-
-  static Stream<PrinterStatus>? _statusStream;
-
-  static const int ALIGN_LEFT = 0;
-  static const int ALIGN_CENTER = 1;
-  static const int ALIGN_RIGHT = 2;
-
-  static const int FONT_DEFAULT = 0;
-  static const int FONT_BOLD = 1;
-  static const int FONT_UNDERLINE = 2;
-  static const int FONT_REVERSE = 4;
-
-  static const int TEXT_SIZE_1X = 0;
-  static const int TEXT_SIZE_2X = 1;
-  static const int TEXT_SIZE_3X = 2;
-  static const int TEXT_SIZE_4X = 3;
-
-  static const int BARCODE_CODE39 = 0;
-  static const int BARCODE_CODE128 = 1;
-  static const int BARCODE_EAN8 = 2;
-  static const int BARCODE_EAN13 = 3;
-  static const int BARCODE_UPC_A = 4;
-  static const int BARCODE_UPC_E = 5;
-  static const int BARCODE_ITF = 6;
-  static const int BARCODE_CODABAR = 7;
-
-  static const int HRI_TEXT_NONE = 0;
-  static const int HRI_TEXT_ABOVE = 1;
-  static const int HRI_TEXT_BELOW = 2;
-  static const int HRI_TEXT_BOTH = 3;
-
-  static const int QR_ERROR_LEVEL_L = 0;
-  static const int QR_ERROR_LEVEL_M = 1;
-  static const int QR_ERROR_LEVEL_Q = 2;
-  static const int QR_ERROR_LEVEL_H = 3;
-
-  static Future<List<String>> getAvailablePorts() async {
-    try {
-      final List<dynamic> ports =
-          await _channel.invokeMethod('getAvailablePorts');
-      return ports.cast<String>();
-    } catch (e) {
-      throw FlutterSewooException('Failed to get available ports: $e');
-    }
-  }
-
-  static Future<bool> connect(String portName, {int baudRate = 9600}) async {
-    try {
-      final bool result = await _channel.invokeMethod('connect', {
-        'portName': portName,
-        'baudRate': baudRate,
-      });
-      return result;
-    } catch (e) {
-      throw FlutterSewooException('Failed to connect: $e');
-    }
-  }
-
-  static Future<void> disconnect() async {
-    try {
-      await _channel.invokeMethod('disconnect');
-    } catch (e) {
-      throw FlutterSewooException('Failed to disconnect: $e');
-    }
-  }
-
-  static Future<bool> isConnected() async {
-    try {
-      final bool result = await _channel.invokeMethod('isConnected');
-      return result;
-    } catch (e) {
-      throw FlutterSewooException('Failed to check connection status: $e');
-    }
-  }
-
-  static Future<ConnectionInfo?> getConnectionInfo() async {
-    try {
-      final Map<dynamic, dynamic>? info =
-          await _channel.invokeMethod('getConnectionInfo');
-      if (info != null) {
-        return ConnectionInfo.fromMap(info.cast<String, dynamic>());
-      }
-      return null;
-    } catch (e) {
-      throw FlutterSewooException('Failed to get connection info: $e');
-    }
-  }
-
-  static Future<void> setEncoding(String encoding) async {
-    try {
-      await _channel.invokeMethod('setEncoding', {'encoding': encoding});
-    } catch (e) {
-      throw FlutterSewooException('Failed to set encoding: $e');
-    }
-  }
-
-  static Future<void> printText(
-    String text, {
-    int alignment = ALIGN_LEFT,
-    int fontType = FONT_DEFAULT,
-    int textSize = TEXT_SIZE_1X,
-  }) async {
-    try {
-      await _channel.invokeMethod('printText', {
-        'text': text,
-        'alignment': alignment,
-        'fontType': fontType,
-        'textSize': textSize,
-      });
-    } catch (e) {
-      throw FlutterSewooException('Failed to print text: $e');
-    }
-  }
-
-  static Future<void> printString(String text) async {
-    try {
-      await _channel.invokeMethod('printString', {'text': text});
-    } catch (e) {
-      throw FlutterSewooException('Failed to print string: $e');
-    }
-  }
-
-  static Future<void> printBarcode(
-    String data, {
-    int barcodeType = BARCODE_CODE128,
-    int height = 100,
-    int width = 2,
-    int alignment = ALIGN_CENTER,
-    int hriPosition = HRI_TEXT_BELOW,
-  }) async {
-    try {
-      await _channel.invokeMethod('printBarcode', {
-        'data': data,
-        'barcodeType': barcodeType,
-        'height': height,
-        'width': width,
-        'alignment': alignment,
-        'hriPosition': hriPosition,
-      });
-    } catch (e) {
-      throw FlutterSewooException('Failed to print barcode: $e');
-    }
-  }
-
-  static Future<void> printQRCode(
-    String data, {
-    int moduleSize = 4,
-    int errorLevel = QR_ERROR_LEVEL_M,
-  }) async {
-    try {
-      await _channel.invokeMethod('printQRCode', {
-        'data': data,
-        'moduleSize': moduleSize,
-        'errorLevel': errorLevel,
-      });
-    } catch (e) {
-      throw FlutterSewooException('Failed to print QR code: $e');
-    }
-  }
-
-  static Future<void> printImage(Uint8List imageData) async {
-    try {
-      await _channel.invokeMethod('printImage', {'imageData': imageData});
-    } catch (e) {
-      throw FlutterSewooException('Failed to print image: $e');
-    }
-  }
-
-  static Future<void> printImageFile(String imagePath) async {
-    try {
-      await _channel.invokeMethod('printImageFile', {'imagePath': imagePath});
-    } catch (e) {
-      throw FlutterSewooException('Failed to print image file: $e');
-    }
-  }
-
-  static Future<void> printPDF(String pdfPath, {int pageNumber = 0}) async {
-    try {
-      await _channel.invokeMethod('printPDF', {
-        'pdfPath': pdfPath,
-        'pageNumber': pageNumber,
-      });
-    } catch (e) {
-      throw FlutterSewooException('Failed to print PDF: $e');
-    }
-  }
-
-  static Future<void> printAndroidFont(
-    String text, {
-    String fontFamily = 'sans-serif',
-    double fontSize = 24.0,
-    int alignment = ALIGN_LEFT,
-  }) async {
-    try {
-      await _channel.invokeMethod('printAndroidFont', {
-        'text': text,
-        'fontFamily': fontFamily,
-        'fontSize': fontSize,
-        'alignment': alignment,
-      });
-    } catch (e) {
-      throw FlutterSewooException('Failed to print with Android font: $e');
-    }
-  }
-
-  static Future<void> lineFeed({int lines = 1}) async {
-    try {
-      await _channel.invokeMethod('lineFeed', {'lines': lines});
-    } catch (e) {
-      throw FlutterSewooException('Failed to feed lines: $e');
-    }
-  }
-
-  static Future<void> cutPaper() async {
-    try {
-      await _channel.invokeMethod('cutPaper');
-    } catch (e) {
-      throw FlutterSewooException('Failed to cut paper: $e');
-    }
-  }
-
-  static Future<void> openCashDrawer() async {
-    try {
-      await _channel.invokeMethod('openCashDrawer');
-    } catch (e) {
-      throw FlutterSewooException('Failed to open cash drawer: $e');
-    }
-  }
-
-  static Future<PrinterStatus> checkPrinterStatus() async {
-    try {
-      final Map<dynamic, dynamic> status =
-          await _channel.invokeMethod('checkPrinterStatus');
-      return PrinterStatus.fromMap(status.cast<String, dynamic>());
-    } catch (e) {
-      throw FlutterSewooException('Failed to check printer status: $e');
-    }
-  }
-
-  static Future<void> reset() async {
-    try {
-      await _channel.invokeMethod('reset');
-    } catch (e) {
-      throw FlutterSewooException('Failed to reset printer: $e');
-    }
-  }
-
-  static Future<void> sendRawData(Uint8List data) async {
-    try {
-      await _channel.invokeMethod('sendRawData', {'data': data});
-    } catch (e) {
-      throw FlutterSewooException('Failed to send raw data: $e');
-    }
-  }
-
-  static Future<void> enableASBMode(bool enable) async {
-    try {
-      await _channel.invokeMethod('enableASBMode', {'enable': enable});
-    } catch (e) {
-      throw FlutterSewooException('Failed to set ASB mode: $e');
-    }
-  }
-
-  static Stream<PrinterStatus> getStatusStream() {
-    _statusStream ??=
-        _statusChannel.receiveBroadcastStream().map((dynamic event) {
-      return PrinterStatus.fromMap((event as Map).cast<String, dynamic>());
-    });
-    return _statusStream!;
-  }
-}
-
-class ConnectionInfo {
-  final String portName;
-  final int baudRate;
-  final bool isConnected;
-
-  ConnectionInfo({
-    required this.portName,
-    required this.baudRate,
-    required this.isConnected,
-  });
-
-  factory ConnectionInfo.fromMap(Map<String, dynamic> map) {
-    return ConnectionInfo(
-      portName: map['portName'] ?? '',
-      baudRate: map['baudRate'] ?? 0,
-      isConnected: map['isConnected'] ?? false,
-    );
-  }
-}
-
-class PrinterStatus {
-  final int statusCode;
-  final bool isNormal;
-  final bool isPaperEmpty;
-  final bool isPaperNearEnd;
-  final bool isCoverOpen;
-  final bool isError;
-  final bool isCashDrawerOpen;
-  final String? errorMessage;
-
-  PrinterStatus({
-    required this.statusCode,
-    required this.isNormal,
-    required this.isPaperEmpty,
-    required this.isPaperNearEnd,
-    required this.isCoverOpen,
-    required this.isError,
-    this.isCashDrawerOpen = false,
-    this.errorMessage,
-  });
-
-  factory PrinterStatus.fromMap(Map<String, dynamic> map) {
-    return PrinterStatus(
-      statusCode: map['statusCode'] ?? 0,
-      isNormal: map['isNormal'] ?? false,
-      isPaperEmpty: map['isPaperEmpty'] ?? false,
-      isPaperNearEnd: map['isPaperNearEnd'] ?? false,
-      isCoverOpen: map['isCoverOpen'] ?? false,
-      isError: map['isError'] ?? false,
-      isCashDrawerOpen: map['isCashDrawerOpen'] ?? false,
-      errorMessage: map['error'],
-    );
-  }
-
-  @override
-  String toString() {
-    if (isNormal) {
-      return 'Printer Status: Normal';
-    }
-
-    List<String> issues = [];
-    if (isPaperEmpty) issues.add('Paper Empty');
-    if (isPaperNearEnd) issues.add('Paper Near End');
-    if (isCoverOpen) issues.add('Cover Open');
-    if (isError) issues.add('Printer Error');
-    if (isCashDrawerOpen) issues.add('Cash Drawer Open');
-    if (errorMessage != null) issues.add(errorMessage!);
-
-    return 'Printer Status: ${issues.join(', ')}';
-  }
-}
-
-class FlutterSewooException implements Exception {
-  final String message;
-
-  FlutterSewooException(this.message);
-
-  @override
-  String toString() => 'FlutterSewooException: $message';
-}
+import 'dart:async';
+import 'dart:typed_data';
+import 'package:flutter/services.dart';
+
+class SewooUsbPrinter {
+  static const MethodChannel _channel =
+      MethodChannel('flutter_sewoo_usb_printer');
+  static const EventChannel _statusChannel =
+      EventChannel('flutter_sewoo_usb_printer/status');
+
+  static const EventChannel _jobChannel =
+      EventChannel('flutter_sewoo_usb_printer/jobs');
+
+  static const EventChannel _errorChannel =
+      EventChannel('flutter_sewoo_usb_printer/errors');
+
+  static Stream<PrinterStatus>? _statusStream;
+  static Stream<PrintJobProgress>? _jobStream;
+  static Stream<CommandError>? _errorStream;
+
+  static const int ALIGN_LEFT = 0;
+  static const int ALIGN_CENTER = 1;
+  static const int ALIGN_RIGHT = 2;
+
+  static const int FONT_DEFAULT = 0;
+  static const int FONT_BOLD = 1;
+  static const int FONT_UNDERLINE = 2;
+  static const int FONT_REVERSE = 4;
+
+  static const int TEXT_SIZE_1X = 0;
+  static const int TEXT_SIZE_2X = 1;
+  static const int TEXT_SIZE_3X = 2;
+  static const int TEXT_SIZE_4X = 3;
+
+  static const String SPOOL_OFF = 'off';
+  static const String SPOOL_MEMORY = 'memory';
+  static const String SPOOL_DISK = 'disk';
+
+  static const int BARCODE_CODE39 = 0;
+  static const int BARCODE_CODE128 = 1;
+  static const int BARCODE_EAN8 = 2;
+  static const int BARCODE_EAN13 = 3;
+  static const int BARCODE_UPC_A = 4;
+  static const int BARCODE_UPC_E = 5;
+  static const int BARCODE_ITF = 6;
+  static const int BARCODE_CODABAR = 7;
+
+  static const int HRI_TEXT_NONE = 0;
+  static const int HRI_TEXT_ABOVE = 1;
+  static const int HRI_TEXT_BELOW = 2;
+  static const int HRI_TEXT_BOTH = 3;
+
+  static const int QR_ERROR_LEVEL_L = 0;
+  static const int QR_ERROR_LEVEL_M = 1;
+  static const int QR_ERROR_LEVEL_Q = 2;
+  static const int QR_ERROR_LEVEL_H = 3;
+
+  static Future<List<String>> getAvailablePorts() async {
+    try {
+      final List<dynamic> ports =
+          await _channel.invokeMethod('getAvailablePorts');
+      return ports.cast<String>();
+    } catch (e) {
+      throw FlutterSewooException('Failed to get available ports: $e');
+    }
+  }
+
+  static Future<bool> connect(String portName, {int baudRate = 9600}) async {
+    try {
+      final bool result = await _channel.invokeMethod('connect', {
+        'portName': portName,
+        'baudRate': baudRate,
+      });
+      return result;
+    } catch (e) {
+      throw FlutterSewooException('Failed to connect: $e');
+    }
+  }
+
+  static Future<void> disconnect() async {
+    try {
+      await _channel.invokeMethod('disconnect');
+    } catch (e) {
+      throw FlutterSewooException('Failed to disconnect: $e');
+    }
+  }
+
+  static Future<bool> isConnected() async {
+    try {
+      final bool result = await _channel.invokeMethod('isConnected');
+      return result;
+    } catch (e) {
+      throw FlutterSewooException('Failed to check connection status: $e');
+    }
+  }
+
+  static Future<ConnectionInfo?> getConnectionInfo() async {
+    try {
+      final Map<dynamic, dynamic>? info =
+          await _channel.invokeMethod('getConnectionInfo');
+      if (info != null) {
+        return ConnectionInfo.fromMap(info.cast<String, dynamic>());
+      }
+      return null;
+    } catch (e) {
+      throw FlutterSewooException('Failed to get connection info: $e');
+    }
+  }
+
+  static Future<void> setEncoding(String encoding) async {
+    try {
+      await _channel.invokeMethod('setEncoding', {'encoding': encoding});
+    } catch (e) {
+      throw FlutterSewooException('Failed to set encoding: $e');
+    }
+  }
+
+  static Future<void> printText(
+    String text, {
+    int alignment = ALIGN_LEFT,
+    int fontType = FONT_DEFAULT,
+    int textSize = TEXT_SIZE_1X,
+  }) async {
+    try {
+      await _channel.invokeMethod('printText', {
+        'text': text,
+        'alignment': alignment,
+        'fontType': fontType,
+        'textSize': textSize,
+      });
+    } catch (e) {
+      throw FlutterSewooException('Failed to print text: $e');
+    }
+  }
+
+  /// With [acknowledgeEarly] the future completes once the string is queued,
+  /// before it is written; a later failure only reaches
+  /// [getCommandErrorStream]. The same applies to [lineFeed], [cutPaper] and
+  /// [reset].
+  static Future<void> printString(String text,
+      {bool acknowledgeEarly = false}) async {
+    try {
+      await _channel.invokeMethod('printString',
+          {'text': text, 'acknowledgeEarly': acknowledgeEarly});
+    } catch (e) {
+      throw FlutterSewooException('Failed to print string: $e');
+    }
+  }
+
+  static Future<void> printBarcode(
+    String data, {
+    int barcodeType = BARCODE_CODE128,
+    int height = 100,
+    int? width,
+    int alignment = ALIGN_CENTER,
+    int hriPosition = HRI_TEXT_BELOW,
+  }) async {
+    try {
+      await _channel.invokeMethod('printBarcode', {
+        'data': data,
+        'barcodeType': barcodeType,
+        'height': height,
+        'width': width,
+        'alignment': alignment,
+        'hriPosition': hriPosition,
+      });
+    } catch (e) {
+      throw FlutterSewooException('Failed to print barcode: $e');
+    }
+  }
+
+  static Future<void> printQRCode(
+    String data, {
+    int? moduleSize,
+    int errorLevel = QR_ERROR_LEVEL_M,
+  }) async {
+    try {
+      await _channel.invokeMethod('printQRCode', {
+        'data': data,
+        'moduleSize': moduleSize,
+        'errorLevel': errorLevel,
+      });
+    } catch (e) {
+      throw FlutterSewooException('Failed to print QR code: $e');
+    }
+  }
+
+  static Future<void> printImage(Uint8List imageData) async {
+    try {
+      final int jobId = await submitImage(imageData);
+      await waitForJob(jobId);
+    } catch (e) {
+      throw FlutterSewooException('Failed to print image: $e');
+    }
+  }
+
+  static Future<int> submitImage(Uint8List imageData) async {
+    try {
+      final int jobId =
+          await _channel.invokeMethod('printImage', {'imageData': imageData});
+      return jobId;
+    } catch (e) {
+      throw FlutterSewooException('Failed to submit image: $e');
+    }
+  }
+
+  static Future<void> printImageFile(String imagePath) async {
+    try {
+      final int jobId = await submitImageFile(imagePath);
+      await waitForJob(jobId);
+    } catch (e) {
+      throw FlutterSewooException('Failed to print image file: $e');
+    }
+  }
+
+  static Future<int> submitImageFile(String imagePath) async {
+    try {
+      final int jobId = await _channel
+          .invokeMethod('printImageFile', {'imagePath': imagePath});
+      return jobId;
+    } catch (e) {
+      throw FlutterSewooException('Failed to submit image file: $e');
+    }
+  }
+
+  static Future<void> printPDF(String pdfPath, {int pageNumber = 0}) async {
+    try {
+      final int jobId = await submitPDF(pdfPath, pageNumber: pageNumber);
+      await waitForJob(jobId);
+    } catch (e) {
+      throw FlutterSewooException('Failed to print PDF: $e');
+    }
+  }
+
+  /// Pass a negative [pageNumber] to print every page of the document.
+  static Future<int> submitPDF(String pdfPath, {int pageNumber = 0}) async {
+    try {
+      final int jobId = await _channel.invokeMethod('printPDF', {
+        'pdfPath': pdfPath,
+        'pageNumber': pageNumber,
+      });
+      return jobId;
+    } catch (e) {
+      throw FlutterSewooException('Failed to submit PDF: $e');
+    }
+  }
+
+  static Future<void> waitForJob(int jobId) async {
+    try {
+      await _channel.invokeMethod('awaitJob', {'jobId': jobId});
+    } catch (e) {
+      throw FlutterSewooException('Print job $jobId did not complete: $e');
+    }
+  }
+
+  static Future<bool> cancelJob(int jobId) async {
+    try {
+      final bool result =
+          await _channel.invokeMethod('cancelJob', {'jobId': jobId});
+      return result;
+    } catch (e) {
+      throw FlutterSewooException('Failed to cancel job: $e');
+    }
+  }
+
+  static Future<void> printAndroidFont(
+    String text, {
+    String fontFamily = 'sans-serif',
+    double fontSize = 24.0,
+    int alignment = ALIGN_LEFT,
+  }) async {
+    try {
+      await _channel.invokeMethod('printAndroidFont', {
+        'text': text,
+        'fontFamily': fontFamily,
+        'fontSize': fontSize,
+        'alignment': alignment,
+      });
+    } catch (e) {
+      throw FlutterSewooException('Failed to print with Android font: $e');
+    }
+  }
+
+  static Future<void> lineFeed(
+      {int lines = 1, bool acknowledgeEarly = false}) async {
+    try {
+      await _channel.invokeMethod(
+          'lineFeed', {'lines': lines, 'acknowledgeEarly': acknowledgeEarly});
+    } catch (e) {
+      throw FlutterSewooException('Failed to feed lines: $e');
+    }
+  }
+
+  static Future<void> cutPaper({bool acknowledgeEarly = false}) async {
+    try {
+      await _channel
+          .invokeMethod('cutPaper', {'acknowledgeEarly': acknowledgeEarly});
+    } catch (e) {
+      throw FlutterSewooException('Failed to cut paper: $e');
+    }
+  }
+
+  static Future<void> openCashDrawer() async {
+    try {
+      await _channel.invokeMethod('openCashDrawer');
+    } catch (e) {
+      throw FlutterSewooException('Failed to open cash drawer: $e');
+    }
+  }
+
+  static Future<PrinterStatus> checkPrinterStatus() async {
+    try {
+      final Map<dynamic, dynamic> status =
+          await _channel.invokeMethod('checkPrinterStatus');
+      return PrinterStatus.fromMap(status.cast<String, dynamic>());
+    } catch (e) {
+      throw FlutterSewooException('Failed to check printer status: $e');
+    }
+  }
+
+  /// Status reads younger than [duration] are served from cache, and
+  /// concurrent [checkPrinterStatus] calls share a single printer query.
+  static Future<void> setStatusCacheDuration(Duration duration) async {
+    try {
+      await _channel.invokeMethod(
+          'setStatusCacheDuration', {'milliseconds': duration.inMilliseconds});
+    } catch (e) {
+      throw FlutterSewooException('Failed to set status cache duration: $e');
+    }
+  }
+
+  /// Hold print calls while the printer is disconnected or out of paper and
+  /// send them in order once it recovers. [mode] is [SPOOL_OFF],
+  /// [SPOOL_MEMORY] or [SPOOL_DISK]; disk entries survive an app restart.
+  static Future<SpoolStatus> setSpoolMode(String mode,
+      {int? maxEntries, int? maxBytes}) async {
+    try {
+      final Map<dynamic, dynamic> status = await _channel.invokeMethod(
+          'setSpoolMode', {
+        'mode': mode,
+        'maxEntries': maxEntries,
+        'maxBytes': maxBytes,
+      });
+      return SpoolStatus.fromMap(status.cast<String, dynamic>());
+    } catch (e) {
+      throw FlutterSewooException('Failed to set spool mode: $e');
+    }
+  }
+
+  static Future<SpoolStatus> getSpoolStatus() async {
+    try {
+      final Map<dynamic, dynamic> status =
+          await _channel.invokeMethod('getSpoolStatus');
+      return SpoolStatus.fromMap(status.cast<String, dynamic>());
+    } catch (e) {
+      throw FlutterSewooException('Failed to get spool status: $e');
+    }
+  }
+
+  /// Drop everything still waiting in the spool; spooled jobs are cancelled
+  static Future<SpoolStatus> clearSpool() async {
+    try {
+      final Map<dynamic, dynamic> status =
+          await _channel.invokeMethod('clearSpool');
+      return SpoolStatus.fromMap(status.cast<String, dynamic>());
+    } catch (e) {
+      throw FlutterSewooException('Failed to clear spool: $e');
+    }
+  }
+
+  /// Get ready for the first receipt in the background: reconnect to the
+  /// last port used (when [reconnect] is set), restore the last encoding and
+  /// load the charset, fonts, PDF classes and render threads. Images in
+  /// [logoPaths] are rasterized and kept for [printImageFile]. Completes
+  /// when everything is loaded; it is not required before printing.
+  static Future<WarmUpReport> warmUp(
+      {bool reconnect = true, List<String> logoPaths = const []}) async {
+    try {
+      final Map<dynamic, dynamic> report = await _channel.invokeMethod(
+          'warmUp', {'reconnect': reconnect, 'logoPaths': logoPaths});
+      return WarmUpReport.fromMap(report.cast<String, dynamic>());
+    } catch (e) {
+      throw FlutterSewooException('Failed to warm up: $e');
+    }
+  }
+
+  /// Port, baud rate, encoding and font families saved for [warmUp]
+  static Future<Map<String, dynamic>> getWarmStartSettings() async {
+    try {
+      final Map<dynamic, dynamic> settings =
+          await _channel.invokeMethod('getWarmStartSettings');
+      return settings.cast<String, dynamic>();
+    } catch (e) {
+      throw FlutterSewooException('Failed to get warm start settings: $e');
+    }
+  }
+
+  static Future<void> clearWarmStartSettings() async {
+    try {
+      await _channel.invokeMethod('clearWarmStartSettings');
+    } catch (e) {
+      throw FlutterSewooException('Failed to clear warm start settings: $e');
+    }
+  }
+
+  /// Record every method call with its timing to a binary file for the
+  /// load-test replay tool in `tool/loadtest`. Returns the file path.
+  static Future<String> startRecording({String? path}) async {
+    try {
+      final String file =
+          await _channel.invokeMethod('startRecording', {'path': path});
+      return file;
+    } catch (e) {
+      throw FlutterSewooException('Failed to start recording: $e');
+    }
+  }
+
+  /// Stop recording; the result holds `path`, `calls` and `bytes`
+  static Future<Map<String, dynamic>> stopRecording() async {
+    try {
+      final Map<dynamic, dynamic> summary =
+          await _channel.invokeMethod('stopRecording');
+      return summary.cast<String, dynamic>();
+    } catch (e) {
+      throw FlutterSewooException('Failed to stop recording: $e');
+    }
+  }
+
+  /// Capabilities of the connected printer, probed on first connect to each
+  /// port and cached on the device afterwards.
+  static Future<PrinterProfile> getPrinterProfile() async {
+    try {
+      final Map<dynamic, dynamic> profile =
+          await _channel.invokeMethod('getPrinterProfile');
+      return PrinterProfile.fromMap(profile.cast<String, dynamic>());
+    } catch (e) {
+      throw FlutterSewooException('Failed to get printer profile: $e');
+    }
+  }
+
+  /// Forgets cached profiles so every port is probed again on next connect.
+  static Future<void> clearPrinterProfiles() async {
+    try {
+      await _channel.invokeMethod('clearPrinterProfiles');
+    } catch (e) {
+      throw FlutterSewooException('Failed to clear printer profiles: $e');
+    }
+  }
+
+  static Future<OptimizerStats> getOptimizerStats() async {
+    try {
+      final Map<dynamic, dynamic> stats =
+          await _channel.invokeMethod('getOptimizerStats');
+      return OptimizerStats.fromMap(stats.cast<String, dynamic>());
+    } catch (e) {
+      throw FlutterSewooException('Failed to get optimizer stats: $e');
+    }
+  }
+
+  /// Get hit/miss counters and memory use of the bitmap and buffer pools
+  static Future<Map<String, BufferPoolStats>> getBufferPoolStats() async {
+    try {
+      final Map<dynamic, dynamic> stats =
+          await _channel.invokeMethod('getBufferPoolStats');
+      return stats.map((key, value) => MapEntry(key as String,
+          BufferPoolStats.fromMap((value as Map).cast<String, dynamic>())));
+    } catch (e) {
+      throw FlutterSewooException('Failed to get buffer pool stats: $e');
+    }
+  }
+
+  /// Free every pooled buffer that is not currently leased
+  static Future<bool> trimBufferPools() async {
+    try {
+      final bool result = await _channel.invokeMethod('trimBufferPools');
+      return result;
+    } catch (e) {
+      throw FlutterSewooException('Failed to trim buffer pools: $e');
+    }
+  }
+
+  static Future<void> reset({bool acknowledgeEarly = false}) async {
+    try {
+      await _channel
+          .invokeMethod('reset', {'acknowledgeEarly': acknowledgeEarly});
+    } catch (e) {
+      throw FlutterSewooException('Failed to reset printer: $e');
+    }
+  }
+
+  static Future<void> sendRawData(Uint8List data) async {
+    try {
+      await _channel.invokeMethod('sendRawData', {'data': data});
+    } catch (e) {
+      throw FlutterSewooException('Failed to send raw data: $e');
+    }
+  }
+
+  static Future<void> enableASBMode(bool enable) async {
+    try {
+      await _channel.invokeMethod('enableASBMode', {'enable': enable});
+    } catch (e) {
+      throw FlutterSewooException('Failed to set ASB mode: $e');
+    }
+  }
+
+  static Stream<PrinterStatus> getStatusStream() {
+    _statusStream ??=
+        _statusChannel.receiveBroadcastStream().map((dynamic event) {
+      return PrinterStatus.fromMap((event as Map).cast<String, dynamic>());
+    });
+    return _statusStream!;
+  }
+
+  static Stream<PrintJobProgress> getJobProgressStream() {
+    _jobStream ??= _jobChannel.receiveBroadcastStream().map((dynamic event) {
+      return PrintJobProgress.fromMap((event as Map).cast<String, dynamic>());
+    });
+    return _jobStream!;
+  }
+
+  /// Failures of feeds, cuts, resets and strings sent with `acknowledgeEarly`
+  /// after their future had completed.
+  static Stream<CommandError> getCommandErrorStream() {
+    _errorStream ??=
+        _errorChannel.receiveBroadcastStream().map((dynamic event) {
+      return CommandError.fromMap((event as Map).cast<String, dynamic>());
+    });
+    return _errorStream!;
+  }
+}
+
+class ConnectionInfo {
+  final String portName;
+  final int baudRate;
+  final bool isConnected;
+
+  ConnectionInfo({
+    required this.portName,
+    required this.baudRate,
+    required this.isConnected,
+  });
+
+  factory ConnectionInfo.fromMap(Map<String, dynamic> map) {
+    return ConnectionInfo(
+      portName: map['portName'] ?? '',
+      baudRate: map['baudRate'] ?? 0,
+      isConnected: map['isConnected'] ?? false,
+    );
+  }
+}
+
+class PrinterStatus {
+  final int statusCode;
+  final bool isNormal;
+  final bool isPaperEmpty;
+  final bool isPaperNearEnd;
+  final bool isCoverOpen;
+  final bool isError;
+  final bool isCashDrawerOpen;
+  final String? errorMessage;
+
+  PrinterStatus({
+    required this.statusCode,
+    required this.isNormal,
+    required this.isPaperEmpty,
+    required this.isPaperNearEnd,
+    required this.isCoverOpen,
+    required this.isError,
+    this.isCashDrawerOpen = false,
+    this.errorMessage,
+  });
+
+  factory PrinterStatus.fromMap(Map<String, dynamic> map) {
+    return PrinterStatus(
+      statusCode: map['statusCode'] ?? 0,
+      isNormal: map['isNormal'] ?? false,
+      isPaperEmpty: map['isPaperEmpty'] ?? false,
+      isPaperNearEnd: map['isPaperNearEnd'] ?? false,
+      isCoverOpen: map['isCoverOpen'] ?? false,
+      isError: map['isError'] ?? false,
+      isCashDrawerOpen: map['isCashDrawerOpen'] ?? false,
+      errorMessage: map['error'],
+    );
+  }
+
+  @override
+  String toString() {
+    if (isNormal) {
+      return 'Printer Status: Normal';
+    }
+
+    List<String> issues = [];
+    if (isPaperEmpty) issues.add('Paper Empty');
+    if (isPaperNearEnd) issues.add('Paper Near End');
+    if (isCoverOpen) issues.add('Cover Open');
+    if (isError) issues.add('Printer Error');
+    if (isCashDrawerOpen) issues.add('Cash Drawer Open');
+    if (errorMessage != null) issues.add(errorMessage!);
+
+    return 'Printer Status: ${issues.join(', ')}';
+  }
+}
+
+class PrinterProfile {
+  final String deviceKey;
+  final String model;
+  final String firmware;
+  final int dotWidth;
+  final int bufferSize;
+  final String rasterMode;
+  final int barcodeWidth;
+  final int qrModuleSize;
+  final List<String> codePages;
+
+  PrinterProfile({
+    required this.deviceKey,
+    required this.model,
+    required this.firmware,
+    required this.dotWidth,
+    required this.bufferSize,
+    required this.rasterMode,
+    required this.barcodeWidth,
+    required this.qrModuleSize,
+    required this.codePages,
+  });
+
+  factory PrinterProfile.fromMap(Map<String, dynamic> map) {
+    return PrinterProfile(
+      deviceKey: map['deviceKey'] ?? '',
+      model: map['model'] ?? '',
+      firmware: map['firmware'] ?? '',
+      dotWidth: map['dotWidth'] ?? 576,
+      bufferSize: map['bufferSize'] ?? 0,
+      rasterMode: map['rasterMode'] ?? 'RASTER',
+      barcodeWidth: map['barcodeWidth'] ?? 2,
+      qrModuleSize: map['qrModuleSize'] ?? 4,
+      codePages: (map['codePages'] as List?)?.cast<String>() ?? const [],
+    );
+  }
+}
+
+class OptimizerStats {
+  final int batches;
+  final int lastCommandsIn;
+  final int lastCommandsOut;
+  final int lastBytesSaved;
+  final int totalCommandsSaved;
+  final int totalBytesSaved;
+
+  OptimizerStats({
+    required this.batches,
+    required this.lastCommandsIn,
+    required this.lastCommandsOut,
+    required this.lastBytesSaved,
+    required this.totalCommandsSaved,
+    required this.totalBytesSaved,
+  });
+
+  factory OptimizerStats.fromMap(Map<String, dynamic> map) {
+    return OptimizerStats(
+      batches: map['batches'] ?? 0,
+      lastCommandsIn: map['lastCommandsIn'] ?? 0,
+      lastCommandsOut: map['lastCommandsOut'] ?? 0,
+      lastBytesSaved: map['lastBytesSaved'] ?? 0,
+      totalCommandsSaved: map['totalCommandsSaved'] ?? 0,
+      totalBytesSaved: map['totalBytesSaved'] ?? 0,
+    );
+  }
+}
+
+class BufferPoolStats {
+  final int hits;
+  final int misses;
+  final int outstanding;
+  final int leasedBytes;
+  final int pooledBytes;
+  final int peakBytes;
+  final int maxPooledBytes;
+  final int leaks;
+
+  BufferPoolStats({
+    required this.hits,
+    required this.misses,
+    required this.outstanding,
+    required this.leasedBytes,
+    required this.pooledBytes,
+    required this.peakBytes,
+    required this.maxPooledBytes,
+    required this.leaks,
+  });
+
+  factory BufferPoolStats.fromMap(Map<String, dynamic> map) {
+    return BufferPoolStats(
+      hits: map['hits'] ?? 0,
+      misses: map['misses'] ?? 0,
+      outstanding: map['outstanding'] ?? 0,
+      leasedBytes: map['leasedBytes'] ?? 0,
+      pooledBytes: map['pooledBytes'] ?? 0,
+      peakBytes: map['peakBytes'] ?? 0,
+      maxPooledBytes: map['maxPooledBytes'] ?? 0,
+      leaks: map['leaks'] ?? 0,
+    );
+  }
+
+  double get hitRate => hits + misses == 0 ? 0 : hits / (hits + misses);
+}
+
+class WarmUpReport {
+  final bool ready;
+  final String? portName;
+  final Duration timeToReady;
+  final Duration sinceStart;
+  final Map<String, Duration> steps;
+  final int logos;
+  final String? error;
+
+  WarmUpReport({
+    required this.ready,
+    this.portName,
+    required this.timeToReady,
+    required this.sinceStart,
+    required this.steps,
+    required this.logos,
+    this.error,
+  });
+
+  factory WarmUpReport.fromMap(Map<String, dynamic> map) {
+    final Map<dynamic, dynamic> steps = map['steps'] ?? {};
+    return WarmUpReport(
+      ready: map['ready'] ?? false,
+      portName: map['portName'],
+      timeToReady: Duration(milliseconds: map['timeToReadyMs'] ?? 0),
+      sinceStart: Duration(milliseconds: map['sinceStartMs'] ?? 0),
+      steps: steps.map((key, value) =>
+          MapEntry(key as String, Duration(milliseconds: value as int))),
+      logos: map['logos'] ?? 0,
+      error: map['error'],
+    );
+  }
+}
+
+class SpoolStatus {
+  final String mode;
+  final int depth;
+  final int bytes;
+  final int maxEntries;
+  final int maxBytes;
+  final Duration oldestAge;
+  final bool draining;
+  final int totalSpooled;
+  final int totalDrained;
+  final int totalRejected;
+
+  SpoolStatus({
+    required this.mode,
+    required this.depth,
+    required this.bytes,
+    required this.maxEntries,
+    required this.maxBytes,
+    required this.oldestAge,
+    required this.draining,
+    required this.totalSpooled,
+    required this.totalDrained,
+    required this.totalRejected,
+  });
+
+  factory SpoolStatus.fromMap(Map<String, dynamic> map) {
+    return SpoolStatus(
+      mode: map['mode'] ?? 'off',
+      depth: map['depth'] ?? 0,
+      bytes: map['bytes'] ?? 0,
+      maxEntries: map['maxEntries'] ?? 0,
+      maxBytes: map['maxBytes'] ?? 0,
+      oldestAge: Duration(milliseconds: map['oldestAgeMs'] ?? 0),
+      draining: map['draining'] ?? false,
+      totalSpooled: map['totalSpooled'] ?? 0,
+      totalDrained: map['totalDrained'] ?? 0,
+      totalRejected: map['totalRejected'] ?? 0,
+    );
+  }
+}
+
+class PrintJobProgress {
+  final int jobId;
+  final String type;
+  final String state;
+  final int bytesSent;
+  final int totalBytes;
+  final int pagesDone;
+  final int totalPages;
+  final String? errorMessage;
+
+  PrintJobProgress({
+    required this.jobId,
+    required this.type,
+    required this.state,
+    required this.bytesSent,
+    required this.totalBytes,
+    required this.pagesDone,
+    required this.totalPages,
+    this.errorMessage,
+  });
+
+  factory PrintJobProgress.fromMap(Map<String, dynamic> map) {
+    return PrintJobProgress(
+      jobId: map['jobId'] ?? 0,
+      type: map['type'] ?? '',
+      state: map['state'] ?? '',
+      bytesSent: map['bytesSent'] ?? 0,
+      totalBytes: map['totalBytes'] ?? 0,
+      pagesDone: map['pagesDone'] ?? 0,
+      totalPages: map['totalPages'] ?? 0,
+      errorMessage: map['error'],
+    );
+  }
+
+  bool get isFinished =>
+      state == 'completed' || state == 'failed' || state == 'cancelled';
+
+  /// For multi-page PDFs [totalBytes] grows as each page is rasterized.
+  double get fraction => totalBytes > 0 ? bytesSent / totalBytes : 0.0;
+
+  @override
+  String toString() =>
+      'PrintJobProgress(job $jobId $state: $bytesSent/$totalBytes bytes, '
+      '$pagesDone/$totalPages pages)';
+}
+
+class CommandError {
+  final String command;
+  final String? errorMessage;
+  final DateTime timestamp;
+
+  CommandError({
+    required this.command,
+    this.errorMessage,
+    required this.timestamp,
+  });
+
+  factory CommandError.fromMap(Map<String, dynamic> map) {
+    return CommandError(
+      command: map['command'] ?? '',
+      errorMessage: map['error'],
+      timestamp: DateTime.fromMillisecondsSinceEpoch(map['timestamp'] ?? 0),
+    );
+  }
+
+  @override
+  String toString() => 'CommandError($command: $errorMessage)';
+}
+
+class FlutterSewooException implements Exception {
+  final String message;
+
+  FlutterSewooException(this.message);
+
+  @override
+  String toString() => 'FlutterSewooException: $message';
+}
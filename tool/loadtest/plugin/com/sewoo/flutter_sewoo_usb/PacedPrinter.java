@@ -0,0 +1,269 @@
+package com.sewoo.flutter_sewoo_usb;
+
+import com.sewoo.flutter_sewoo_usb.loadtest.Terminal;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.locks.LockSupport;
+
+// Stands in for PrinterOperations and the Sewoo SDK on one serial link. Like the SDK's request queue, writes are
+// accepted at once and drain behind the caller: bytes at the baud rate (8N1, 10 bits a byte) and paper at the head
+// speed, whichever is slower. Segments the plugin encodes itself are counted byte for byte; commands the SDK would
+// encode, and the SDK's bitmap compression, are estimated.
+final class PacedPrinter implements PrinterSink {
+    private static final int TEXT_LINE_DOTS = 30;
+    private static final int COLUMN_STRIPE_DOTS = 24;
+
+    private final String portName;
+    private final int baudRate;
+    private final int dotLinesPerSecond;
+    private final int dotWidth;
+    private final RasterMode rasterMode;
+    private volatile String encoding = "UTF-8";
+    private volatile Terminal.CutListener cutListener;
+    // Guarded by this, as PrinterOperations guards its link state with the port lock
+    private long busyUntil = 0;
+    private long previousBusyUntil = 0;
+    private long bytesWritten = 0;
+
+    PacedPrinter(String portName, int baudRate, int dotLinesPerSecond, int dotWidth, RasterMode rasterMode) {
+        this.portName = portName;
+        this.baudRate = baudRate;
+        this.dotLinesPerSecond = dotLinesPerSecond;
+        this.dotWidth = dotWidth;
+        this.rasterMode = rasterMode;
+    }
+
+    void setEncoding(String encoding) {
+        this.encoding = encoding;
+    }
+
+    void setCutListener(Terminal.CutListener listener) {
+        this.cutListener = listener;
+    }
+
+    synchronized long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    @Override
+    public boolean isConnected() {
+        return true;
+    }
+
+    @Override
+    public String getPortName() {
+        return portName;
+    }
+
+    @Override
+    public String getEncoding() {
+        return encoding;
+    }
+
+    @Override
+    public int getDotWidth() {
+        return dotWidth;
+    }
+
+    @Override
+    public RasterMode getRasterMode() {
+        return rasterMode;
+    }
+
+    // Android fonts are drawn with AWT here; the plugin draws them on a Canvas
+    @Override
+    public void prepareCommand(PrintCommand command) {
+        if (command.type == PrintCommand.Type.ANDROID_FONT) {
+            Font font = new Font(command.fontFamily != null ? command.fontFamily : Font.SANS_SERIF, Font.PLAIN,
+                    Math.max(1, Math.round(command.fontSize)));
+            BufferedImage scratch = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+            Graphics2D measure = scratch.createGraphics();
+            FontMetrics metrics = measure.getFontMetrics(font);
+            measure.dispose();
+
+            BufferedImage image = new BufferedImage(metrics.stringWidth(command.text) + 10,
+                    metrics.getAscent() + metrics.getDescent() + 10, BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = image.createGraphics();
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, image.getWidth(), image.getHeight());
+            graphics.setColor(Color.BLACK);
+            graphics.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            graphics.setFont(font);
+            graphics.drawString(command.text, 5, metrics.getAscent() + 5);
+            graphics.dispose();
+            command.rendered = ReplayTerminal.rasterize(image, dotWidth);
+        }
+    }
+
+    @Override
+    public synchronized void writeSegment(PrintSegment segment) {
+        previousBusyUntil = busyUntil;
+        switch (segment.kind) {
+            case BYTES:
+                pace(segment.bytes.length, dotRows(segment.bytes));
+                break;
+            case BITMAP:
+                try {
+                    pace(compressedSize(segment.band), segment.band.getHeight());
+                } finally {
+                    segment.band.release();
+                }
+                break;
+            case COMMAND:
+                writeCommand(segment.command);
+                break;
+            case PAGE_END:
+                break;
+        }
+    }
+
+    private void writeCommand(PrintCommand command) {
+        switch (command.type) {
+            case TEXT:
+                pace(command.encodedSize(encoding) + 10, lines(command.text) * TEXT_LINE_DOTS);
+                break;
+            case STRING:
+                pace(command.encodedSize(encoding), lines(command.text) * TEXT_LINE_DOTS);
+                break;
+            case BARCODE:
+                pace(command.encodedSize(encoding) + 16, command.arg(1) + 24);
+                break;
+            case QR_CODE: {
+                int size = command.encodedSize(encoding);
+                int modules = 21 + 4 * Math.min(39, size / 16);
+                pace(size + 25, modules * command.arg(0));
+                break;
+            }
+            case ANDROID_FONT:
+                try {
+                    RasterImage rendered = command.rendered;
+                    pace(rasterMode == RasterMode.COMPRESSED_RASTER ? compressedSize(rendered)
+                            : 8 + rendered.getWidthBytes() * rendered.getHeight(), rendered.getHeight());
+                } finally {
+                    command.rendered.release();
+                    command.rendered = null;
+                }
+                break;
+            case FEED:
+            case FEED_LINES:
+                pace(command.encodedSize(encoding), command.arg(0) * TEXT_LINE_DOTS);
+                break;
+            case FEED_AND_CUT:
+                pace(command.encodedSize(encoding), command.arg(0));
+                reportCut();
+                break;
+            case CUT:
+                pace(command.encodedSize(encoding), 0);
+                reportCut();
+                break;
+            default:
+                pace(command.encodedSize(encoding), 0);
+                break;
+        }
+    }
+
+    @Override
+    public void awaitDrained() {
+        synchronized (this) {
+            long wait;
+            while ((wait = busyUntil - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(this, wait);
+            }
+        }
+    }
+
+    @Override
+    public void awaitAllButLastDrained() {
+        long freeAt;
+        synchronized (this) {
+            freeAt = previousBusyUntil;
+        }
+        long wait;
+        while ((wait = freeAt - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(this, wait);
+        }
+    }
+
+    @Override
+    public synchronized void resetAfterCancel() {
+        busyUntil = 0;
+        previousBusyUntil = 0;
+        pace(5, 3 * TEXT_LINE_DOTS);
+    }
+
+    private void pace(int bytes, int dotRows) {
+        // Serial transfer and paper movement overlap, so the slower of the two sets the pace
+        long serial = baudRate > 0 ? bytes * 10L * 1_000_000_000L / baudRate : 0;
+        long paper = dotLinesPerSecond > 0 ? dotRows * 1_000_000_000L / dotLinesPerSecond : 0;
+        busyUntil = Math.max(busyUntil, System.nanoTime()) + Math.max(serial, paper);
+        bytesWritten += bytes;
+    }
+
+    private void reportCut() {
+        Terminal.CutListener listener = cutListener;
+        if (listener != null) {
+            listener.onCut(busyUntil);
+        }
+    }
+
+    // Paper moved by the segments RasterEncoder produces: ESC J feeds, GS v 0 bands and ESC * stripes
+    private static int dotRows(byte[] bytes) {
+        if (bytes.length == 3 && bytes[0] == 0x1B && bytes[1] == 'J') {
+            return bytes[2] & 0xFF;
+        }
+        if (bytes.length >= 8 && bytes[0] == 0x1D && bytes[1] == 'v' && bytes[2] == '0') {
+            return (bytes[6] & 0xFF) | ((bytes[7] & 0xFF) << 8);
+        }
+        if (bytes.length >= 5 && bytes[0] == 0x1B && bytes[1] == '*') {
+            return COLUMN_STRIPE_DOTS;
+        }
+        return 0;
+    }
+
+    // PackBits over each row plus a GS v 0 style header; the SDK's own compression is not public
+    static int compressedSize(RasterImage band) {
+        int widthBytes = band.getWidthBytes();
+        byte[] data = band.getData();
+        int size = 8;
+        for (int y = 0; y < band.getHeight(); y++) {
+            int offset = y * widthBytes;
+            int x = 0;
+            while (x < widthBytes) {
+                int run = 1;
+                while (x + run < widthBytes && run < 128 && data[offset + x + run] == data[offset + x]) {
+                    run++;
+                }
+                if (run >= 3) {
+                    size += 2;
+                    x += run;
+                    continue;
+                }
+                int literal = 0;
+                while (x + literal < widthBytes && literal < 128 && (x + literal + 2 >= widthBytes
+                        || data[offset + x + literal] != data[offset + x + literal + 1]
+                        || data[offset + x + literal] != data[offset + x + literal + 2])) {
+                    literal++;
+                }
+                literal = Math.max(1, literal);
+                size += 1 + literal;
+                x += literal;
+            }
+        }
+        return size;
+    }
+
+    private static int lines(String text) {
+        int lines = 1;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') {
+                lines++;
+            }
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,232 @@
+package com.sewoo.flutter_sewoo_usb;
+
+import com.sewoo.flutter_sewoo_usb.loadtest.Terminal;
+import com.sewoo.jpos.printer.LKPrint;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// The replay's side of FlutterSewooUsbPlugin: the same PrintCommands, job tasks and raster encoding, submitted to
+// the plugin's CommandQueue and PrintJobManager, with PacedPrinter behind the pipeline. Each terminal loads this
+// class in a class loader of its own, so the singletons it uses belong to that terminal alone.
+public final class ReplayTerminal implements Terminal {
+    private static final int PAGE_HEIGHT_RATIO_PERCENT = 141;
+    private static final long STATUS_CACHE_MS = 500;
+
+    private final PrinterProfile profile;
+    private final PacedPrinter printer;
+    // The plugin's blocking executor, for status queries
+    private final ExecutorService blockingExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "replay-status");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile long lastStatusAt = 0;
+
+    // A dot width of 0 or a null raster mode keeps the model's own
+    public ReplayTerminal(String portName, int baudRate, int dotLinesPerSecond, String model, int dotWidth,
+                          String rasterMode) {
+        profile = PrinterProfile.forModel(portName, model, "");
+        printer = new PacedPrinter(portName, baudRate, dotLinesPerSecond,
+                dotWidth > 0 ? dotWidth : profile.getDotWidth(),
+                rasterMode != null ? RasterMode.valueOf(rasterMode.toUpperCase(Locale.ROOT)) : profile.getRasterMode());
+        PrintPipeline.getInstance().setSink(printer);
+    }
+
+    @Override
+    public Kind call(String method, Object arguments, Reply reply, Reply finished) {
+        Map<?, ?> args = arguments instanceof Map ? (Map<?, ?>) arguments : null;
+        MethodCommands.Arguments argument = key -> args != null ? args.get(key) : null;
+        switch (method) {
+            case "setEncoding":
+                printer.setEncoding(string(args, "encoding", "UTF-8"));
+                reply.onReply(null);
+                return Kind.COMMAND;
+            case "printText":
+                submit(MethodCommands.text(argument, replyTo(reply)));
+                return Kind.COMMAND;
+            case "printString":
+                submit(MethodCommands.string(argument, replyTo(reply)), MethodCommands.acknowledgeEarly(argument));
+                return Kind.COMMAND;
+            case "printBarcode":
+                submit(MethodCommands.barcode(argument, profile, replyTo(reply)));
+                return Kind.COMMAND;
+            case "printQRCode":
+                submit(MethodCommands.qrCode(argument, profile, replyTo(reply)));
+                return Kind.COMMAND;
+            case "printAndroidFont":
+                submit(MethodCommands.androidFont(argument, replyTo(reply)));
+                return Kind.COMMAND;
+            case "lineFeed":
+                submit(MethodCommands.feed(argument, replyTo(reply)), MethodCommands.acknowledgeEarly(argument));
+                return Kind.COMMAND;
+            case "cutPaper":
+                submit(PrintCommand.cut(replyTo(reply)), MethodCommands.acknowledgeEarly(argument));
+                return Kind.COMMAND;
+            case "openCashDrawer":
+                submit(PrintCommand.cashDrawer(replyTo(reply)));
+                return Kind.COMMAND;
+            case "reset":
+                submit(PrintCommand.reset(replyTo(reply)), MethodCommands.acknowledgeEarly(argument));
+                return Kind.COMMAND;
+            case "sendRawData":
+                submit(MethodCommands.raw(argument, replyTo(reply)));
+                return Kind.COMMAND;
+            case "checkPrinterStatus":
+                checkPrinterStatus(reply);
+                return Kind.COMMAND;
+            case "printImage": {
+                Object data = args != null ? args.get("imageData") : null;
+                byte[] imageData = data instanceof byte[] ? (byte[]) data : new byte[0];
+                submitJob("image", (job, out) -> renderImage(decode(imageData), out), reply, finished);
+                return Kind.JOB;
+            }
+            case "printImageFile": {
+                File file = new File(string(args, "imagePath", ""));
+                submitJob("imageFile", (job, out) -> renderImage(file.isFile() ? decode(file)
+                        : page(printer.getDotWidth(), printer.getDotWidth()), out), reply, finished);
+                return Kind.JOB;
+            }
+            case "printPDF":
+                submitJob("pdf", (job, out) -> renderImage(page(printer.getDotWidth(),
+                        printer.getDotWidth() * PAGE_HEIGHT_RATIO_PERCENT / 100), out), reply, finished);
+                return Kind.JOB;
+            default:
+                return Kind.UNSUPPORTED;
+        }
+    }
+
+    @Override
+    public void setCutListener(CutListener listener) {
+        printer.setCutListener(listener);
+    }
+
+    // A command that is not acknowledged early answers only after everything queued before it has been written
+    @Override
+    public void drain() throws InterruptedException {
+        CountDownLatch written = new CountDownLatch(1);
+        CommandQueue.getInstance().submit(PrintCommand.raw(new byte[0], error -> written.countDown()), false);
+        written.await();
+        printer.awaitDrained();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return printer.getBytesWritten();
+    }
+
+    @Override
+    public Map<String, Object> getOptimizerStats() {
+        return CommandQueue.getInstance().getStats();
+    }
+
+    @Override
+    public void shutdown() {
+        PrintPipeline.getInstance().shutdownWriters();
+        blockingExecutor.shutdown();
+    }
+
+    private void submit(PrintCommand command) {
+        submit(command, false);
+    }
+
+    private void submit(PrintCommand command, boolean acknowledgeEarly) {
+        CommandQueue.getInstance().submit(command, acknowledgeEarly);
+    }
+
+    private void submitJob(String type, PrintJobManager.JobTask task, Reply reply, Reply finished) {
+        PrintJobManager jobManager = PrintJobManager.getInstance();
+        PrintJob job = jobManager.submit(type, task);
+        reply.onReply(null);
+        jobManager.awaitJob(job.getId(), done -> finished.onReply(
+                done.getState() == PrintJob.State.COMPLETED ? null : String.valueOf(done.getErrorMessage())));
+    }
+
+    // As in the plugin: wait for the link to drain, unless a recent status is still cached
+    private void checkPrinterStatus(Reply reply) {
+        blockingExecutor.execute(() -> {
+            if (System.currentTimeMillis() - lastStatusAt > STATUS_CACHE_MS) {
+                printer.awaitDrained();
+                lastStatusAt = System.currentTimeMillis();
+            }
+            reply.onReply(null);
+        });
+    }
+
+    private void renderImage(BufferedImage image, SegmentStream out) throws InterruptedException {
+        out.getJob().setTotalPages(1);
+        RasterEncoder.render(rasterize(image, printer.getDotWidth()), printer.getRasterMode(),
+                LKPrint.LK_ALIGNMENT_CENTER, out);
+        out.add(PrintSegment.pageEnd());
+    }
+
+    private static BufferedImage decode(byte[] imageData) throws IOException {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(imageData));
+        if (image == null) {
+            throw new IOException("Failed to decode image data");
+        }
+        return image;
+    }
+
+    private static BufferedImage decode(File file) throws IOException {
+        BufferedImage image = ImageIO.read(file);
+        if (image == null) {
+            throw new IOException("Failed to decode image file");
+        }
+        return image;
+    }
+
+    // The AWT counterpart of BitmapRaster.rasterize
+    static RasterImage rasterize(BufferedImage image, int maxWidthDots) {
+        BufferedImage source = image;
+        if (image.getWidth() > maxWidthDots) {
+            int scaledHeight = Math.max(1, image.getHeight() * maxWidthDots / image.getWidth());
+            source = new BufferedImage(maxWidthDots, scaledHeight, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D graphics = source.createGraphics();
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.drawImage(image, 0, 0, maxWidthDots, scaledHeight, null);
+            graphics.dispose();
+        }
+        BufferedImage pixels = source;
+        int width = pixels.getWidth();
+        return RasterImage.fromRows(width, pixels.getHeight(),
+                (y, row) -> pixels.getRGB(0, y, width, 1, row, 0, width));
+    }
+
+    // Files recorded on a device are rarely on this machine, so image files and PDF pages print as a page of text
+    private static BufferedImage page(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(0, 0, width, height);
+        graphics.setColor(Color.BLACK);
+        graphics.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 20));
+        int line = 0;
+        for (int y = 40; y < height - 16; y += 32) {
+            graphics.drawString(String.format(Locale.ROOT, "%-28s%10.2f", "Line " + (++line), line * 1.75), 16, y);
+        }
+        graphics.dispose();
+        return image;
+    }
+
+    private static PrintCommand.Callback replyTo(Reply reply) {
+        return error -> reply.onReply(error != null ? error.getMessage() : null);
+    }
+
+    private static String string(Map<?, ?> args, String key, String fallback) {
+        Object value = args != null ? args.get(key) : null;
+        return value instanceof String ? (String) value : fallback;
+    }
+}
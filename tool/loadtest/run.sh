@@ -0,0 +1,22 @@
+#!/bin/sh
+# Builds and runs the replay driver: tool/loadtest/run.sh <recording.swr> [options]
+# or tool/loadtest/run.sh generate <out.swr> [options]. Needs only a JDK (8 or newer).
+set -e
+DIR="$(cd "$(dirname "$0")" && pwd)"
+PLUGIN_SRC="$DIR/../../android/src/main/java/com/sewoo/flutter_sewoo_usb"
+SDK_JAR="$DIR/../../android/libs/Sewoo_Android_1114.jar"
+CLASSES="$DIR/build/classes"
+PLUGIN_CLASSES="$DIR/build/plugin"
+# The plugin's pure-Java core; everything else in the plugin needs the Android framework
+CORE="CommandQueue CommandOptimizer PrintCommand PrintPipeline PortWriter PrintSegment SegmentStream PrintJob
+PrintJobManager PrinterSink RasterImage RasterEncoder RasterMode BufferPool ByteArrayPool IntArrayPool RingBuffer
+SpscRingBuffer MpscRingBuffer PrinterProfile MethodCommands"
+
+mkdir -p "$CLASSES" "$PLUGIN_CLASSES"
+javac -d "$CLASSES" $(find "$DIR/src" -name '*.java')
+# Kept off the driver's class path: each terminal loads these in a class loader of its own
+javac -Xlint:all -d "$PLUGIN_CLASSES" -cp "$CLASSES:$SDK_JAR" \
+    $(for name in $CORE; do echo "$PLUGIN_SRC/$name.java"; done) \
+    $(find "$DIR/plugin" "$DIR/stubs" -name '*.java')
+exec java -Djava.awt.headless=true -Dloadtest.plugin.classpath="$PLUGIN_CLASSES:$SDK_JAR" -cp "$CLASSES" \
+    com.sewoo.flutter_sewoo_usb.loadtest.ReplayDriver "$@"
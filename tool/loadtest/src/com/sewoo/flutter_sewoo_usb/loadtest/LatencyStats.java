@@ -0,0 +1,46 @@
+package com.sewoo.flutter_sewoo_usb.loadtest;
+
+import java.util.Arrays;
+
+// Latency samples in nanoseconds; percentiles are nearest-rank over the sorted samples
+final class LatencyStats {
+    private long[] samples = new long[1024];
+    private int count = 0;
+    private boolean sorted = true;
+
+    synchronized void add(long nanos) {
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, count * 2);
+        }
+        samples[count++] = nanos;
+        sorted = false;
+    }
+
+    synchronized void addAll(LatencyStats other) {
+        synchronized (other) {
+            for (int i = 0; i < other.count; i++) {
+                add(other.samples[i]);
+            }
+        }
+    }
+
+    synchronized int count() {
+        return count;
+    }
+
+    synchronized long percentile(double percent) {
+        if (count == 0) {
+            return 0;
+        }
+        if (!sorted) {
+            Arrays.sort(samples, 0, count);
+            sorted = true;
+        }
+        int rank = (int) Math.ceil(percent / 100.0 * count);
+        return samples[Math.max(0, Math.min(count - 1, rank - 1))];
+    }
+
+    synchronized long max() {
+        return percentile(100);
+    }
+}
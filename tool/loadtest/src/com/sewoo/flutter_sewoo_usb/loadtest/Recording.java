@@ -0,0 +1,138 @@
+package com.sewoo.flutter_sewoo_usb.loadtest;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+// Reads and writes the call recordings produced by the plugin's CallRecorder
+final class Recording {
+    static final byte[] MAGIC = {'S', 'W', 'R', '1'};
+    private static final int RECORD_CALL = 1;
+
+    final long startedAt;
+    final List<Call> calls;
+
+    static final class Call {
+        final long offsetMicros;
+        final String method;
+        final byte[] arguments;
+
+        Call(long offsetMicros, String method, byte[] arguments) {
+            this.offsetMicros = offsetMicros;
+            this.method = method;
+            this.arguments = arguments;
+        }
+    }
+
+    Recording(long startedAt, List<Call> calls) {
+        this.startedAt = startedAt;
+        this.calls = Collections.unmodifiableList(calls);
+    }
+
+    long durationMicros() {
+        return calls.isEmpty() ? 0 : calls.get(calls.size() - 1).offsetMicros;
+    }
+
+    static Recording read(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException(file + " is not a call recording");
+            }
+            long startedAt = in.readLong();
+
+            List<String> methods = new ArrayList<>();
+            List<Call> calls = new ArrayList<>();
+            long offset = 0;
+            while (true) {
+                int type = in.read();
+                if (type < 0) {
+                    break;
+                }
+                if (type != RECORD_CALL) {
+                    throw new IOException("Unknown record type " + type);
+                }
+
+                offset += readVarint(in);
+                int methodRef = (int) readVarint(in);
+                String method;
+                if (methodRef == 0) {
+                    byte[] name = new byte[(int) readVarint(in)];
+                    in.readFully(name);
+                    method = new String(name, StandardCharsets.UTF_8);
+                    methods.add(method);
+                } else {
+                    method = methods.get(methodRef - 1);
+                }
+                byte[] arguments = new byte[(int) readVarint(in)];
+                in.readFully(arguments);
+                calls.add(new Call(offset, method, arguments));
+            }
+            return new Recording(startedAt, calls);
+        }
+    }
+
+    void write(File file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.write(MAGIC);
+            out.writeLong(startedAt);
+            List<String> methods = new ArrayList<>();
+            long previous = 0;
+            for (Call call : calls) {
+                out.writeByte(RECORD_CALL);
+                writeVarint(out, call.offsetMicros - previous);
+                previous = call.offsetMicros;
+                int methodRef = methods.indexOf(call.method);
+                if (methodRef >= 0) {
+                    writeVarint(out, methodRef + 1);
+                } else {
+                    methods.add(call.method);
+                    byte[] name = call.method.getBytes(StandardCharsets.UTF_8);
+                    writeVarint(out, 0);
+                    writeVarint(out, name.length);
+                    out.write(name);
+                }
+                writeVarint(out, call.arguments.length);
+                out.write(call.arguments);
+            }
+        }
+    }
+
+    private static long readVarint(InputStream in) throws IOException {
+        long value = 0;
+        int shift = 0;
+        while (true) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException("Truncated recording");
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+            shift += 7;
+        }
+    }
+
+    private static void writeVarint(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+}
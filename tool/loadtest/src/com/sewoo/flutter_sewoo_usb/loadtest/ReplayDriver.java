@@ -0,0 +1,419 @@
+package com.sewoo.flutter_sewoo_usb.loadtest;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// Replays a recording from the plugin's CallRecorder through the plugin's own command queue, optimizer, render
+// pipeline, port writer and raster encoder, against paced virtual printers, and reports latency, throughput and
+// allocation. Runs headless on any Java 8+ JVM; see tool/loadtest/run.sh.
+public final class ReplayDriver {
+    private static final String USAGE = "usage:\n"
+            + "  ReplayDriver <recording.swr> [--speed 1|max|<factor>] [--terminals N] [--baud B]\n"
+            + "               [--model M] [--dot-width D] [--lines-per-second L]\n"
+            + "               [--raster-mode raster|compressed_raster|column]\n"
+            + "  ReplayDriver generate <out.swr> [--receipts N] [--interval-ms M]";
+    // Set by run.sh to the plugin classes and the Sewoo jar
+    private static final String PLUGIN_CLASSPATH_PROPERTY = "loadtest.plugin.classpath";
+    private static final String TERMINAL_CLASS = "com.sewoo.flutter_sewoo_usb.ReplayTerminal";
+
+    private final Recording recording;
+    private final double speed;
+    private final int terminals;
+    private final int baudRate;
+    private final String model;
+    private final int dotWidth;
+    private final int dotLinesPerSecond;
+    private final String rasterMode;
+
+    private final LatencyStats callLatency = new LatencyStats();
+    private final LatencyStats jobLatency = new LatencyStats();
+    private final LatencyStats receiptLatency = new LatencyStats();
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong receipts = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong terminalAllocated = new AtomicLong();
+
+    // A dot width of 0 or a null raster mode leaves it to the model's printer profile
+    private ReplayDriver(Recording recording, double speed, int terminals, int baudRate, String model, int dotWidth,
+                         int dotLinesPerSecond, String rasterMode) {
+        this.recording = recording;
+        this.speed = speed;
+        this.terminals = terminals;
+        this.baudRate = baudRate;
+        this.model = model;
+        this.dotWidth = dotWidth;
+        this.dotLinesPerSecond = dotLinesPerSecond;
+        this.rasterMode = rasterMode;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            fail(null);
+        }
+        if (args[0].equals("generate")) {
+            if (args.length < 2 || args[1].startsWith("--")) {
+                fail(null);
+            }
+            Map<String, String> options = parseOptions(args, 2);
+            File out = new File(args[1]);
+            Recording generated = generate(intOption(options, "receipts", 50), intOption(options, "interval-ms", 2000));
+            generated.write(out);
+            System.out.printf(Locale.ROOT, "wrote %d calls (%.1f s) to %s%n", generated.calls.size(),
+                    generated.durationMicros() / 1e6, out);
+            return;
+        }
+
+        Map<String, String> options = parseOptions(args, 1);
+        String speedOption = options.containsKey("speed") ? options.get("speed") : "1";
+        double speed;
+        try {
+            speed = speedOption.equals("max") ? Double.POSITIVE_INFINITY : Double.parseDouble(speedOption);
+        } catch (NumberFormatException e) {
+            speed = 0;
+        }
+        if (!(speed > 0)) {
+            fail("--speed must be 'max' or a positive factor");
+        }
+        String rasterMode = options.get("raster-mode");
+        if (rasterMode != null && !rasterMode.matches("(?i)raster|compressed_raster|column")) {
+            fail("--raster-mode must be raster, compressed_raster or column");
+        }
+
+        Recording recording = Recording.read(new File(args[0]));
+        new ReplayDriver(recording, speed,
+                Math.max(1, intOption(options, "terminals", 1)),
+                intOption(options, "baud", 115200),
+                options.containsKey("model") ? options.get("model") : "LK-P3",
+                intOption(options, "dot-width", 0),
+                intOption(options, "lines-per-second", 2000),
+                rasterMode).run();
+        // The plugin's command queue keeps a scheduler thread per terminal
+        System.exit(0);
+    }
+
+    private void run() throws Exception {
+        System.out.printf(Locale.ROOT,
+                "replaying %d calls (%.1f s recorded) on %d terminal(s), speed %s, %s baud, %s%n",
+                recording.calls.size(), recording.durationMicros() / 1e6, terminals,
+                Double.isInfinite(speed) ? "max" : speed + "x", baudRate > 0 ? String.valueOf(baudRate) : "unlimited",
+                model + (rasterMode != null ? ", " + rasterMode.toLowerCase(Locale.ROOT) : ""));
+
+        Map<Long, Long> baseline = allocatedByLiveThreads();
+        List<Terminal> tills = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        CountDownLatch ready = new CountDownLatch(1);
+        for (int i = 0; i < terminals; i++) {
+            Terminal terminal = newTerminal("printer-" + i);
+            tills.add(terminal);
+            threads.add(new Thread(() -> replay(terminal, ready), "terminal-" + i));
+        }
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        long started = System.nanoTime();
+        ready.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsed = System.nanoTime() - started;
+
+        long bytes = 0;
+        long commandsSaved = 0;
+        long bytesSaved = 0;
+        for (Terminal terminal : tills) {
+            bytes += terminal.getBytesWritten();
+            Map<String, Object> stats = terminal.getOptimizerStats();
+            commandsSaved += ((Number) stats.get("totalCommandsSaved")).longValue();
+            bytesSaved += ((Number) stats.get("totalBytesSaved")).longValue();
+        }
+        // Render workers, writers and schedulers are still alive here; the terminal threads added their own share
+        long pluginAllocated = 0;
+        Map<Long, Long> now = allocatedByLiveThreads();
+        for (Map.Entry<Long, Long> thread : now.entrySet()) {
+            Long before = baseline.get(thread.getKey());
+            pluginAllocated += Math.max(0, thread.getValue() - (before != null ? before : 0));
+        }
+        for (Terminal terminal : tills) {
+            terminal.shutdown();
+        }
+
+        report(elapsed, bytes, pluginAllocated, commandsSaved, bytesSaved);
+    }
+
+    // Each till gets its own copy of the plugin classes, so their singletons (command queue, pipeline, job manager,
+    // buffer pools) are as separate as they are on separate devices
+    private Terminal newTerminal(String portName) throws Exception {
+        String classPath = System.getProperty(PLUGIN_CLASSPATH_PROPERTY);
+        if (classPath == null) {
+            throw new IllegalStateException(PLUGIN_CLASSPATH_PROPERTY + " is not set; start the driver with run.sh");
+        }
+        List<URL> urls = new ArrayList<>();
+        for (String entry : classPath.split(File.pathSeparator)) {
+            urls.add(new File(entry).toURI().toURL());
+        }
+        ClassLoader loader = new URLClassLoader(urls.toArray(new URL[0]), ReplayDriver.class.getClassLoader());
+        return (Terminal) loader.loadClass(TERMINAL_CLASS)
+                .getConstructor(String.class, int.class, int.class, String.class, int.class, String.class)
+                .newInstance(portName, baudRate, dotLinesPerSecond, model, dotWidth, rasterMode);
+    }
+
+    private void replay(Terminal terminal, CountDownLatch ready) {
+        LatencyStats calls = new LatencyStats();
+        LatencyStats jobs = new LatencyStats();
+        LatencyStats receipts = new LatencyStats();
+        List<CountDownLatch> openJobs = new ArrayList<>();
+        // Cuts are acknowledged before they print, so a receipt ends when the virtual printer reaches its cut
+        Queue<Long> receiptStarts = new ConcurrentLinkedQueue<>();
+        terminal.setCutListener(printedAt -> {
+            Long start = receiptStarts.poll();
+            if (start != null) {
+                receipts.add(printedAt - start);
+                this.receipts.incrementAndGet();
+            }
+        });
+        long receiptStart = -1;
+        long replayed = 0;
+
+        try {
+            ready.await();
+            long start = System.nanoTime();
+            for (Recording.Call call : recording.calls) {
+                long intended = System.nanoTime();
+                if (!Double.isInfinite(speed)) {
+                    intended = start + (long) (call.offsetMicros * 1000 / speed);
+                    long wait;
+                    while ((wait = intended - System.nanoTime()) > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                }
+                replayed++;
+
+                if (call.method.equals("awaitJob")) {
+                    for (CountDownLatch job : openJobs) {
+                        job.await();
+                    }
+                    openJobs.clear();
+                    calls.add(System.nanoTime() - intended);
+                    continue;
+                }
+
+                final long submitted = intended;
+                final CountDownLatch replied = new CountDownLatch(1);
+                final CountDownLatch finished = new CountDownLatch(1);
+                final long[] repliedAt = new long[1];
+                Terminal.Kind kind = terminal.call(call.method, StandardCodec.decode(call.arguments), error -> {
+                    if (error != null) {
+                        failures.incrementAndGet();
+                    }
+                    repliedAt[0] = System.nanoTime();
+                    replied.countDown();
+                }, error -> {
+                    if (error != null) {
+                        failures.incrementAndGet();
+                    }
+                    jobs.add(System.nanoTime() - submitted);
+                    finished.countDown();
+                });
+                if (kind == Terminal.Kind.UNSUPPORTED) {
+                    continue;
+                }
+
+                if (receiptStart < 0) {
+                    receiptStart = intended;
+                }
+                replied.await();
+                calls.add(repliedAt[0] - submitted);
+                if (kind == Terminal.Kind.JOB) {
+                    openJobs.add(finished);
+                } else if (call.method.equals("cutPaper")) {
+                    receiptStarts.add(receiptStart);
+                    receiptStart = -1;
+                }
+            }
+            for (CountDownLatch job : openJobs) {
+                job.await();
+            }
+            terminal.drain();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        callLatency.addAll(calls);
+        jobLatency.addAll(jobs);
+        receiptLatency.addAll(receipts);
+        this.calls.addAndGet(replayed);
+        terminalAllocated.addAndGet(Math.max(0, allocatedBytes(Thread.currentThread())));
+    }
+
+    private void report(long elapsedNanos, long bytes, long pluginAllocated, long commandsSaved, long bytesSaved) {
+        double seconds = elapsedNanos / 1e9;
+        System.out.printf(Locale.ROOT, "elapsed      %.2f s%n", seconds);
+        System.out.printf(Locale.ROOT, "throughput   %.1f calls/s, %.2f receipts/s, %.1f KB/s%n",
+                calls.get() / seconds, receipts.get() / seconds, bytes / 1024.0 / seconds);
+        printLatency("call", callLatency);
+        printLatency("job", jobLatency);
+        printLatency("receipt", receiptLatency);
+        System.out.printf(Locale.ROOT, "optimizer    %d commands merged away, %d bytes saved%n", commandsSaved,
+                bytesSaved);
+        if (failures.get() > 0) {
+            System.out.printf(Locale.ROOT, "failures     %d calls or jobs answered with an error%n", failures.get());
+        }
+        long total = terminalAllocated.get() + pluginAllocated;
+        System.out.printf(Locale.ROOT, "allocation   %.1f MB total, %.1f KB per call%n",
+                total / 1048576.0, calls.get() > 0 ? total / 1024.0 / calls.get() : 0.0);
+    }
+
+    private static void printLatency(String label, LatencyStats stats) {
+        if (stats.count() == 0) {
+            System.out.printf(Locale.ROOT, "%-12s no samples%n", label);
+            return;
+        }
+        System.out.printf(Locale.ROOT, "%-12s p50 %.1f ms, p99 %.1f ms, max %.1f ms (%d samples)%n", label,
+                stats.percentile(50) / 1e6, stats.percentile(99) / 1e6, stats.max() / 1e6, stats.count());
+    }
+
+    // Bytes allocated by the thread so far, or -1 when the JVM cannot tell
+    static long allocatedBytes(Thread thread) {
+        com.sun.management.ThreadMXBean threads = allocationBean();
+        return threads != null ? threads.getThreadAllocatedBytes(thread.getId()) : -1;
+    }
+
+    // Thread ID to bytes allocated so far, for every live thread; empty when the JVM cannot tell
+    private static Map<Long, Long> allocatedByLiveThreads() {
+        Map<Long, Long> allocated = new HashMap<>();
+        com.sun.management.ThreadMXBean threads = allocationBean();
+        if (threads != null) {
+            long[] ids = threads.getAllThreadIds();
+            long[] bytes = threads.getThreadAllocatedBytes(ids);
+            for (int i = 0; i < ids.length; i++) {
+                if (bytes[i] >= 0) {
+                    allocated.put(ids[i], bytes[i]);
+                }
+            }
+        }
+        return allocated;
+    }
+
+    private static com.sun.management.ThreadMXBean allocationBean() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+            if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+                return threads;
+            }
+        }
+        return null;
+    }
+
+    // A synthetic till: text, a barcode, a QR code and a cut per receipt, with the logo on every tenth
+    static Recording generate(int receipts, int intervalMs) throws IOException {
+        byte[] logo = logo();
+        List<Recording.Call> calls = new ArrayList<>();
+        long offset = 0;
+        for (int r = 0; r < receipts; r++) {
+            offset = Math.max(offset, (long) r * intervalMs * 1000);
+            if (r % 10 == 0) {
+                offset = add(calls, offset, "printImage", args("imageData", logo));
+            }
+            offset = add(calls, offset, "printText", args("text", "SEWOO MART #" + (r + 1), "alignment", 1,
+                    "textSize", 1));
+            int items = 5 + r % 11;
+            for (int i = 0; i < items; i++) {
+                offset = add(calls, offset, "printText", args("text",
+                        String.format(Locale.ROOT, "%-24s%8.2f", "Item " + (i + 1), 1.25 + i * 0.5),
+                        "alignment", 0));
+            }
+            offset = add(calls, offset, "printText", args("text",
+                    String.format(Locale.ROOT, "%-24s%8.2f", "TOTAL", items * 2.5), "alignment", 0));
+            offset = add(calls, offset, "printBarcode", args("data", String.format(Locale.ROOT, "%012d", r),
+                    "barcodeType", 8, "height", 80, "alignment", 1));
+            offset = add(calls, offset, "printQRCode", args("data", "https://example.com/r/" + r,
+                    "moduleSize", 4));
+            // A till that does not wait on each feed and cut opts in to the early acknowledgement
+            offset = add(calls, offset, "lineFeed", args("lines", 3, "acknowledgeEarly", true));
+            offset = add(calls, offset, "cutPaper", args("acknowledgeEarly", true));
+        }
+        return new Recording(System.currentTimeMillis(), calls);
+    }
+
+    // Calls inside a receipt arrive a few milliseconds apart, as they do from an awaiting Dart loop
+    private static long add(List<Recording.Call> calls, long offset, String method, Map<String, Object> arguments) {
+        calls.add(new Recording.Call(offset, method, StandardCodec.encode(arguments)));
+        return offset + 3000;
+    }
+
+    private static Map<String, Object> args(Object... keyValues) {
+        Map<String, Object> map = new HashMap<>();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            map.put((String) keyValues[i], keyValues[i + 1]);
+        }
+        return map;
+    }
+
+    private static byte[] logo() throws IOException {
+        BufferedImage image = new BufferedImage(384, 120, BufferedImage.TYPE_BYTE_BINARY);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(0, 0, image.getWidth(), image.getHeight());
+        graphics.setColor(Color.BLACK);
+        graphics.setFont(new Font(Font.SANS_SERIF, Font.BOLD, 64));
+        graphics.drawString("SEWOO", 60, 90);
+        graphics.dispose();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    private static Map<String, String> parseOptions(String[] args, int from) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = from; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) {
+                fail("Unexpected argument " + args[i]);
+            }
+            options.put(args[i].substring(2), args[++i]);
+        }
+        return options;
+    }
+
+    private static int intOption(Map<String, String> options, String name, int fallback) {
+        String value = options.get(name);
+        if (value == null) {
+            return fallback;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            fail("--" + name + " must be a number");
+            return fallback;
+        }
+    }
+
+    private static void fail(String message) {
+        if (message != null) {
+            System.err.println(message);
+        }
+        System.err.println(USAGE);
+        System.exit(2);
+    }
+}
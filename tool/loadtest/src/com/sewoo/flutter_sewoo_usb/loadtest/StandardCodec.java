@@ -0,0 +1,230 @@
+package com.sewoo.flutter_sewoo_usb.loadtest;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Flutter's StandardMessageCodec wire format, reimplemented so recordings can be read without the Flutter embedding
+final class StandardCodec {
+    private static final byte NULL = 0;
+    private static final byte TRUE = 1;
+    private static final byte FALSE = 2;
+    private static final byte INT = 3;
+    private static final byte LONG = 4;
+    private static final byte BIGINT = 5;
+    private static final byte DOUBLE = 6;
+    private static final byte STRING = 7;
+    private static final byte BYTE_ARRAY = 8;
+    private static final byte INT_ARRAY = 9;
+    private static final byte LONG_ARRAY = 10;
+    private static final byte DOUBLE_ARRAY = 11;
+    private static final byte LIST = 12;
+    private static final byte MAP = 13;
+    private static final byte FLOAT_ARRAY = 14;
+
+    private StandardCodec() {
+    }
+
+    static Object decode(byte[] message) {
+        if (message.length == 0) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(message).order(ByteOrder.LITTLE_ENDIAN);
+        Object value = readValue(buffer);
+        if (buffer.hasRemaining()) {
+            throw new IllegalArgumentException("Message corrupted");
+        }
+        return value;
+    }
+
+    static byte[] encode(Object value) {
+        if (value == null) {
+            return new byte[0];
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeValue(out, value);
+        return out.toByteArray();
+    }
+
+    private static Object readValue(ByteBuffer buffer) {
+        byte type = buffer.get();
+        switch (type) {
+            case NULL:
+                return null;
+            case TRUE:
+                return true;
+            case FALSE:
+                return false;
+            case INT:
+                return buffer.getInt();
+            case LONG:
+                return buffer.getLong();
+            case BIGINT:
+            case STRING:
+                return new String(readBytes(buffer), StandardCharsets.UTF_8);
+            case DOUBLE:
+                readAlignment(buffer, 8);
+                return buffer.getDouble();
+            case BYTE_ARRAY:
+                return readBytes(buffer);
+            case INT_ARRAY: {
+                int length = readSize(buffer);
+                int[] array = new int[length];
+                readAlignment(buffer, 4);
+                buffer.asIntBuffer().get(array);
+                buffer.position(buffer.position() + length * 4);
+                return array;
+            }
+            case LONG_ARRAY: {
+                int length = readSize(buffer);
+                long[] array = new long[length];
+                readAlignment(buffer, 8);
+                buffer.asLongBuffer().get(array);
+                buffer.position(buffer.position() + length * 8);
+                return array;
+            }
+            case DOUBLE_ARRAY: {
+                int length = readSize(buffer);
+                double[] array = new double[length];
+                readAlignment(buffer, 8);
+                buffer.asDoubleBuffer().get(array);
+                buffer.position(buffer.position() + length * 8);
+                return array;
+            }
+            case FLOAT_ARRAY: {
+                int length = readSize(buffer);
+                float[] array = new float[length];
+                readAlignment(buffer, 4);
+                buffer.asFloatBuffer().get(array);
+                buffer.position(buffer.position() + length * 4);
+                return array;
+            }
+            case LIST: {
+                int size = readSize(buffer);
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(buffer));
+                }
+                return list;
+            }
+            case MAP: {
+                int size = readSize(buffer);
+                Map<Object, Object> map = new LinkedHashMap<>();
+                for (int i = 0; i < size; i++) {
+                    map.put(readValue(buffer), readValue(buffer));
+                }
+                return map;
+            }
+            default:
+                throw new IllegalArgumentException("Unknown value type " + type);
+        }
+    }
+
+    private static int readSize(ByteBuffer buffer) {
+        int value = buffer.get() & 0xFF;
+        if (value < 254) {
+            return value;
+        } else if (value == 254) {
+            return buffer.getShort() & 0xFFFF;
+        }
+        return buffer.getInt();
+    }
+
+    private static byte[] readBytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[readSize(buffer)];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private static void readAlignment(ByteBuffer buffer, int alignment) {
+        int mod = buffer.position() % alignment;
+        if (mod != 0) {
+            buffer.position(buffer.position() + alignment - mod);
+        }
+    }
+
+    private static void writeValue(ByteArrayOutputStream out, Object value) {
+        if (value == null) {
+            out.write(NULL);
+        } else if (value instanceof Boolean) {
+            out.write((Boolean) value ? TRUE : FALSE);
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            out.write(INT);
+            writeInt(out, ((Number) value).intValue());
+        } else if (value instanceof Long) {
+            out.write(LONG);
+            writeLong(out, (Long) value);
+        } else if (value instanceof Double || value instanceof Float) {
+            out.write(DOUBLE);
+            writeAlignment(out, 8);
+            writeLong(out, Double.doubleToLongBits(((Number) value).doubleValue()));
+        } else if (value instanceof String) {
+            out.write(STRING);
+            writeBytes(out, ((String) value).getBytes(StandardCharsets.UTF_8));
+        } else if (value instanceof byte[]) {
+            out.write(BYTE_ARRAY);
+            writeBytes(out, (byte[]) value);
+        } else if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            out.write(LIST);
+            writeSize(out, list.size());
+            for (Object item : list) {
+                writeValue(out, item);
+            }
+        } else if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            out.write(MAP);
+            writeSize(out, map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                writeValue(out, entry.getKey());
+                writeValue(out, entry.getValue());
+            }
+        } else {
+            throw new IllegalArgumentException("Unsupported value: " + value.getClass());
+        }
+    }
+
+    private static void writeSize(ByteArrayOutputStream out, int value) {
+        if (value < 254) {
+            out.write(value);
+        } else if (value <= 0xFFFF) {
+            out.write(254);
+            out.write(value);
+            out.write(value >>> 8);
+        } else {
+            out.write(255);
+            writeInt(out, value);
+        }
+    }
+
+    private static void writeBytes(ByteArrayOutputStream out, byte[] bytes) {
+        writeSize(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        out.write(value);
+        out.write(value >>> 8);
+        out.write(value >>> 16);
+        out.write(value >>> 24);
+    }
+
+    private static void writeLong(ByteArrayOutputStream out, long value) {
+        writeInt(out, (int) value);
+        writeInt(out, (int) (value >>> 32));
+    }
+
+    private static void writeAlignment(ByteArrayOutputStream out, int alignment) {
+        int mod = out.size() % alignment;
+        if (mod != 0) {
+            for (int i = 0; i < alignment - mod; i++) {
+                out.write(0);
+            }
+        }
+    }
+}
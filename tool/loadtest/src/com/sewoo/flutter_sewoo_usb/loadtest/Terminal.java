@@ -0,0 +1,35 @@
+package com.sewoo.flutter_sewoo_usb.loadtest;
+
+import java.util.Map;
+
+// One till in the replay: the plugin's own command queue, optimizer, render pipeline, port writer and raster
+// encoder, printing to a paced virtual printer. ReplayTerminal implements it on the plugin side.
+public interface Terminal {
+    enum Kind {
+        COMMAND, JOB, UNSUPPORTED
+    }
+
+    interface Reply {
+        void onReply(String error);
+    }
+
+    interface CutListener {
+        // When the cut will have left the printer, on the System.nanoTime clock
+        void onCut(long printedAtNanos);
+    }
+
+    // Dispatches a recorded call the way the plugin's method handler does. reply fires when the plugin would answer
+    // the Dart future; for a job that is at once, and finished fires when the job ends
+    Kind call(String method, Object arguments, Reply reply, Reply finished);
+
+    void setCutListener(CutListener listener);
+
+    // Returns once everything submitted so far has left the virtual printer
+    void drain() throws InterruptedException;
+
+    long getBytesWritten();
+
+    Map<String, Object> getOptimizerStats();
+
+    void shutdown();
+}
@@ -0,0 +1,18 @@
+package android.util;
+
+// The plugin's core only logs warnings; on the desktop they go to stderr
+public final class Log {
+    private Log() {
+    }
+
+    public static int w(String tag, String message) {
+        System.err.println("W/" + tag + ": " + message);
+        return 0;
+    }
+
+    public static int w(String tag, String message, Throwable error) {
+        System.err.println("W/" + tag + ": " + message);
+        error.printStackTrace();
+        return 0;
+    }
+}
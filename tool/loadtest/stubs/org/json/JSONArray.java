@@ -0,0 +1,18 @@
+package org.json;
+
+import java.util.Collection;
+
+// Only so PrinterProfile compiles on the desktop; the replay never stores profiles
+public class JSONArray {
+    public JSONArray(Collection<?> values) {
+        throw new UnsupportedOperationException("org.json is not available in the load test");
+    }
+
+    public int length() {
+        return 0;
+    }
+
+    public String optString(int index) {
+        return "";
+    }
+}
@@ -0,0 +1,10 @@
+package org.json;
+
+// Only so PrinterProfile compiles on the desktop; the replay never stores profiles
+public class JSONException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    public JSONException(String message) {
+        super(message);
+    }
+}
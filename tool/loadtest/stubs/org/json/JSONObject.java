@@ -0,0 +1,36 @@
+package org.json;
+
+// Only so PrinterProfile compiles on the desktop; the replay never stores profiles
+public class JSONObject {
+    public JSONObject() {
+        throw new UnsupportedOperationException("org.json is not available in the load test");
+    }
+
+    public JSONObject(String source) throws JSONException {
+        this();
+    }
+
+    public JSONObject put(String name, Object value) throws JSONException {
+        return this;
+    }
+
+    public String getString(String name) throws JSONException {
+        return null;
+    }
+
+    public String optString(String name, String fallback) {
+        return fallback;
+    }
+
+    public int optInt(String name, int fallback) {
+        return fallback;
+    }
+
+    public long optLong(String name, long fallback) {
+        return fallback;
+    }
+
+    public JSONArray optJSONArray(String name) {
+        return null;
+    }
+}